@@ -0,0 +1,54 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Attribute conversions done by reportEvent (toHashMap) and by the pre-activation queue (toJson).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class AttributesConversionBenchmark {
+
+    @Param({BenchmarkInputs.SHAPE_FLAT, BenchmarkInputs.SHAPE_NESTED, BenchmarkInputs.SHAPE_WIDE})
+    public String shape;
+
+    private JavaOnlyMap attributes;
+
+    @Setup
+    public void setUp() {
+        attributes = BenchmarkInputs.attributes(shape);
+    }
+
+    @Benchmark
+    public HashMap<String, Object> toHashMap() {
+        return attributes.toHashMap();
+    }
+
+    @Benchmark
+    public JSONObject toJson() throws JSONException {
+        return Utils.toJson(attributes);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+
+/**
+ * Bridge inputs shaped like the ones apps actually send.
+ */
+final class BenchmarkInputs {
+
+    static final String SHAPE_FLAT = "flat";
+    static final String SHAPE_NESTED = "nested";
+    static final String SHAPE_WIDE = "wide";
+
+    private BenchmarkInputs() {
+    }
+
+    static JavaOnlyMap activationConfig() {
+        JavaOnlyMap additionalInfo = new JavaOnlyMap();
+        additionalInfo.putString("source", "benchmark");
+        additionalInfo.putDouble("campaign", 42);
+
+        JavaOnlyMap preloadInfo = new JavaOnlyMap();
+        preloadInfo.putString("trackingId", "123456");
+        preloadInfo.putMap("additionalInfo", additionalInfo);
+
+        JavaOnlyMap config = new JavaOnlyMap();
+        config.putString("apiKey", "00000000-0000-0000-0000-000000000000");
+        config.putString("appVersion", "1.2.3");
+        config.putBoolean("crashReporting", true);
+        config.putBoolean("firstActivationAsUpdate", false);
+        config.putMap("location", location());
+        config.putBoolean("locationTracking", false);
+        config.putBoolean("logs", true);
+        config.putDouble("maxReportsInDatabaseCount", 1000);
+        config.putBoolean("nativeCrashReporting", true);
+        config.putMap("preloadInfo", preloadInfo);
+        config.putDouble("sessionTimeout", 120);
+        config.putBoolean("statisticsSending", true);
+        return config;
+    }
+
+    static JavaOnlyMap location() {
+        JavaOnlyMap location = new JavaOnlyMap();
+        location.putDouble("latitude", 55.7339);
+        location.putDouble("longitude", 37.5886);
+        location.putDouble("altitude", 150);
+        location.putDouble("accuracy", 12.5);
+        location.putDouble("course", 90);
+        location.putDouble("speed", 1.4);
+        location.putDouble("timestamp", 1700000000000d);
+        return location;
+    }
+
+    static JavaOnlyMap attributes(String shape) {
+        if (SHAPE_NESTED.equals(shape)) {
+            return nestedAttributes(5);
+        } else if (SHAPE_WIDE.equals(shape)) {
+            return wideAttributes(120);
+        }
+        return wideAttributes(8);
+    }
+
+    static JavaOnlyMap userProfile(int customKeys) {
+        JavaOnlyMap profile = new JavaOnlyMap();
+        profile.putString("name", "Benchmark User");
+        profile.putString("gender", "female");
+        profile.putDouble("birthDate", 30);
+        profile.putBoolean("notificationsEnabled", true);
+        for (int i = 0; i < customKeys; i++) {
+            switch (i % 3) {
+                case 0:
+                    profile.putString("custom_string_" + i, "value " + i);
+                    break;
+                case 1:
+                    profile.putDouble("custom_number_" + i, i * 1.5);
+                    break;
+                default:
+                    profile.putBoolean("custom_boolean_" + i, i % 2 == 0);
+                    break;
+            }
+        }
+        return profile;
+    }
+
+    private static JavaOnlyMap wideAttributes(int keys) {
+        JavaOnlyMap attributes = new JavaOnlyMap();
+        for (int i = 0; i < keys; i++) {
+            switch (i % 4) {
+                case 0:
+                    attributes.putString("key_" + i, "value " + i);
+                    break;
+                case 1:
+                    attributes.putDouble("key_" + i, i);
+                    break;
+                case 2:
+                    attributes.putBoolean("key_" + i, i % 3 == 0);
+                    break;
+                default:
+                    attributes.putNull("key_" + i);
+                    break;
+            }
+        }
+        return attributes;
+    }
+
+    private static JavaOnlyMap nestedAttributes(int depth) {
+        JavaOnlyMap attributes = wideAttributes(4);
+        if (depth > 0) {
+            JavaOnlyArray items = new JavaOnlyArray();
+            items.pushString("first");
+            items.pushDouble(2);
+            items.pushMap(wideAttributes(3));
+            attributes.putArray("items", items);
+            attributes.putMap("child", nestedAttributes(depth - 1));
+        }
+        return attributes;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import android.location.Location;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import io.appmetrica.analytics.AppMetricaConfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ConfigConversionBenchmark {
+
+    private JavaOnlyMap config;
+    private JavaOnlyMap location;
+
+    @Setup
+    public void setUp() {
+        config = BenchmarkInputs.activationConfig();
+        location = BenchmarkInputs.location();
+    }
+
+    @Benchmark
+    public AppMetricaConfig toAppMetricaConfig() {
+        return Utils.toAppMetricaConfig(config);
+    }
+
+    @Benchmark
+    public Location toLocation() {
+        return Utils.toLocation(location);
+    }
+}
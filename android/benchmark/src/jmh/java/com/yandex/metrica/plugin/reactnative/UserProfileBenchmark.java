@@ -0,0 +1,66 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import io.appmetrica.analytics.profile.UserProfile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The key loop of reportUserProfile: normalization, diff against the last snapshot and profile building.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class UserProfileBenchmark {
+
+    private static final String PROFILE_ID = "benchmark-user";
+
+    @Param({"4", "100"})
+    public int customKeys;
+
+    private JavaOnlyMap profile;
+    private Map<String, Object> values;
+    private UserProfileDiffer differ;
+
+    @Setup
+    public void setUp() {
+        profile = BenchmarkInputs.userProfile(customKeys);
+        values = UserProfileDiffer.toValues(profile);
+        differ = new UserProfileDiffer();
+        differ.commit(PROFILE_ID, values);
+    }
+
+    @Benchmark
+    public Map<String, Object> toValues() {
+        return UserProfileDiffer.toValues(profile);
+    }
+
+    @Benchmark
+    public UserProfile toUserProfile() {
+        return UserProfileDiffer.toUserProfile(values);
+    }
+
+    @Benchmark
+    public Map<String, Object> diffUnchanged() {
+        return differ.diff(PROFILE_ID, UserProfileDiffer.toValues(profile));
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReactApplicationContext;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays an event stream through {@link AppMetricaModule#reportEvent} at a fixed rate with
+ * {@link RecordingReporterBackend} in place of the SDK, then prints the delivery latency
+ * percentiles and how many events were dropped on the way.
+ *
+ * <p>Arguments are {@code key=value} pairs:
+ * <ul>
+ *     <li>{@code rate} - events per second, 10000 by default;</li>
+ *     <li>{@code duration} - seconds to run, 10 by default;</li>
+ *     <li>{@code stream} - JSON lines file with {@code {"name": ..., "attributes": {...}}} objects,
+ *     a synthetic stream is used without it;</li>
+ *     <li>{@code overflowPolicy} - dispatchOverflowPolicy of the activation config.</li>
+ * </ul>
+ */
+public final class EventLoadTest {
+
+    private static final String SEQUENCE_KEY = "_loadTestSequence";
+    private static final long ACTIVATION_TIMEOUT_NANOS = 10000000000L;
+    private static final long DRAIN_TIMEOUT_NANOS = 30000000000L;
+    private static final long SPIN_THRESHOLD_NANOS = 50000L;
+
+    private static final class StreamEvent {
+        final String name;
+        final JavaOnlyMap attributes;
+
+        StreamEvent(String name, JavaOnlyMap attributes) {
+            this.name = name;
+            this.attributes = attributes;
+        }
+    }
+
+    private EventLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rate = 10000;
+        int duration = 10;
+        String streamPath = null;
+        String overflowPolicy = null;
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            String key = arg.substring(0, separator);
+            String value = arg.substring(separator + 1);
+            if ("rate".equals(key)) {
+                rate = Integer.parseInt(value);
+            } else if ("duration".equals(key)) {
+                duration = Integer.parseInt(value);
+            } else if ("stream".equals(key)) {
+                streamPath = value;
+            } else if ("overflowPolicy".equals(key)) {
+                overflowPolicy = value;
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + key);
+            }
+        }
+
+        List<StreamEvent> stream = streamPath == null ? syntheticStream() : readStream(streamPath);
+        if (stream.isEmpty()) {
+            throw new IllegalArgumentException("Event stream is empty");
+        }
+
+        int total = rate * duration;
+        RecordingReporterBackend backend = new RecordingReporterBackend(total + 1024);
+        ReporterBackends.set(backend);
+        AppMetricaModule module = new AppMetricaModule(new ReactApplicationContext(new LoadTestContext()));
+
+        JavaOnlyMap config = new JavaOnlyMap();
+        config.putString("apiKey", "00000000-0000-0000-0000-000000000000");
+        if (overflowPolicy != null) {
+            config.putString("dispatchOverflowPolicy", overflowPolicy);
+        }
+        module.activate(config);
+        awaitActivation();
+
+        long[] submitNanos = new long[total];
+        long intervalNanos = 1000000000L / rate;
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long due = start + i * intervalNanos;
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                if (wait > SPIN_THRESHOLD_NANOS) {
+                    LockSupport.parkNanos(wait - SPIN_THRESHOLD_NANOS);
+                }
+            }
+            StreamEvent event = stream.get(i % stream.size());
+            JavaOnlyMap attributes = new JavaOnlyMap();
+            if (event.attributes != null) {
+                attributes.merge(event.attributes);
+            }
+            attributes.putDouble(SEQUENCE_KEY, i);
+            submitNanos[i] = System.nanoTime();
+            module.reportEvent(event.name, attributes);
+        }
+        long submitEnd = System.nanoTime();
+        awaitDrain(backend);
+
+        List<RecordingReporterBackend.Record> records = backend.getRecords();
+        long[] latencies = new long[records.size()];
+        int delivered = 0;
+        for (RecordingReporterBackend.Record record : records) {
+            if (record.attributes == null) {
+                continue;
+            }
+            Object sequence = record.attributes.get(SEQUENCE_KEY);
+            if (sequence instanceof Number) {
+                latencies[delivered++] = record.timestampNanos - submitNanos[((Number) sequence).intValue()];
+            }
+        }
+        Arrays.sort(latencies, 0, delivered);
+
+        double seconds = (submitEnd - start) / 1e9;
+        System.out.println(String.format("submitted      %d events in %.2f s (%.0f events/s, target %d)",
+                total, seconds, total / seconds, rate));
+        System.out.println(String.format("delivered      %d", delivered));
+        System.out.println(String.format("dropped        %d by the dispatcher, %d missing in total",
+                ReportDispatcher.getInstance().getDroppedCount(), total - delivered));
+        if (delivered > 0) {
+            System.out.println(String.format("latency, us    p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f",
+                    percentile(latencies, delivered, 0.5) / 1e3,
+                    percentile(latencies, delivered, 0.9) / 1e3,
+                    percentile(latencies, delivered, 0.99) / 1e3,
+                    percentile(latencies, delivered, 0.999) / 1e3,
+                    latencies[delivered - 1] / 1e3));
+        }
+    }
+
+    private static void awaitActivation() throws InterruptedException {
+        long deadline = System.nanoTime() + ACTIVATION_TIMEOUT_NANOS;
+        while (!ActivationController.getInstance().isActive()) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Module was not activated");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static void awaitDrain(RecordingReporterBackend backend) throws InterruptedException {
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT_NANOS;
+        int lastCount = -1;
+        while (System.nanoTime() < deadline) {
+            int count = backend.getRecordCount();
+            if (count == lastCount && ReportDispatcher.getInstance().getPendingCount() == 0) {
+                return;
+            }
+            lastCount = count;
+            Thread.sleep(100);
+        }
+    }
+
+    private static long percentile(long[] sorted, int size, double fraction) {
+        int index = (int) Math.ceil(fraction * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, index))];
+    }
+
+    private static List<StreamEvent> syntheticStream() {
+        List<StreamEvent> stream = new ArrayList<StreamEvent>();
+        String[] screens = {"main", "catalog", "product", "cart", "checkout"};
+        for (int i = 0; i < 100; i++) {
+            JavaOnlyMap attributes = new JavaOnlyMap();
+            attributes.putString("screen", screens[i % screens.length]);
+            attributes.putDouble("position", i);
+            attributes.putBoolean("logged_in", i % 3 == 0);
+            if (i % 10 == 0) {
+                JavaOnlyMap item = new JavaOnlyMap();
+                item.putString("id", "item-" + i);
+                item.putDouble("price", 99.9 + i);
+                attributes.putMap("item", item);
+            }
+            stream.add(new StreamEvent(i % 10 == 0 ? "purchase" : "screen_view", attributes));
+        }
+        return stream;
+    }
+
+    private static List<StreamEvent> readStream(String path) throws IOException, JSONException {
+        List<StreamEvent> stream = new ArrayList<StreamEvent>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(path), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                JSONObject event = new JSONObject(line);
+                JSONObject attributes = event.optJSONObject("attributes");
+                stream.add(new StreamEvent(event.getString("name"),
+                        attributes == null ? null : Utils.toReadableMap(attributes)));
+            }
+        } finally {
+            reader.close();
+        }
+        return stream;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Application context for running the module on a plain JVM: it is its own application
+ * context and keeps shared preferences in memory.
+ */
+final class LoadTestContext extends ContextWrapper {
+
+    private final Map<String, InMemoryPreferences> preferences = new HashMap<String, InMemoryPreferences>();
+
+    LoadTestContext() {
+        super(null);
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    @Override
+    public Object getSystemService(String name) {
+        return null;
+    }
+
+    @Override
+    public synchronized SharedPreferences getSharedPreferences(String name, int mode) {
+        InMemoryPreferences result = preferences.get(name);
+        if (result == null) {
+            result = new InMemoryPreferences();
+            preferences.put(name, result);
+        }
+        return result;
+    }
+
+    private static final class InMemoryPreferences implements SharedPreferences {
+
+        private final Map<String, Object> values = new HashMap<String, Object>();
+
+        @Override
+        public synchronized Map<String, ?> getAll() {
+            return new HashMap<String, Object>(values);
+        }
+
+        @Override
+        public String getString(String key, String defValue) {
+            return (String) get(key, defValue);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<String> getStringSet(String key, Set<String> defValues) {
+            return (Set<String>) get(key, defValues);
+        }
+
+        @Override
+        public int getInt(String key, int defValue) {
+            return (Integer) get(key, defValue);
+        }
+
+        @Override
+        public long getLong(String key, long defValue) {
+            return (Long) get(key, defValue);
+        }
+
+        @Override
+        public float getFloat(String key, float defValue) {
+            return (Float) get(key, defValue);
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defValue) {
+            return (Boolean) get(key, defValue);
+        }
+
+        @Override
+        public synchronized boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            return new InMemoryEditor();
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        private synchronized Object get(String key, Object defValue) {
+            return values.containsKey(key) ? values.get(key) : defValue;
+        }
+
+        private final class InMemoryEditor implements Editor {
+
+            private final Map<String, Object> changes = new HashMap<String, Object>();
+            private final Set<String> removals = new HashSet<String>();
+            private boolean clear = false;
+
+            @Override
+            public Editor putString(String key, String value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putStringSet(String key, Set<String> values) {
+                changes.put(key, values == null ? null : new HashSet<String>(values));
+                return this;
+            }
+
+            @Override
+            public Editor putInt(String key, int value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putLong(String key, long value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putFloat(String key, float value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putBoolean(String key, boolean value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor remove(String key) {
+                removals.add(key);
+                return this;
+            }
+
+            @Override
+            public Editor clear() {
+                clear = true;
+                return this;
+            }
+
+            @Override
+            public boolean commit() {
+                synchronized (InMemoryPreferences.this) {
+                    if (clear) {
+                        values.clear();
+                    }
+                    for (String key : removals) {
+                        values.remove(key);
+                    }
+                    values.putAll(changes);
+                }
+                return true;
+            }
+
+            @Override
+            public void apply() {
+                commit();
+            }
+        }
+    }
+}
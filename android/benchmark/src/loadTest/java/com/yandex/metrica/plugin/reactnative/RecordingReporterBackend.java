@@ -0,0 +1,254 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.Intent;
+import android.location.Location;
+
+import io.appmetrica.analytics.AppMetricaConfig;
+import io.appmetrica.analytics.IReporter;
+import io.appmetrica.analytics.ReporterConfig;
+import io.appmetrica.analytics.StartupParamsCallback;
+import io.appmetrica.analytics.profile.UserProfile;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps every call in memory instead of sending it anywhere. Used to measure the plugin
+ * throughput without the SDK and the network.
+ */
+final class RecordingReporterBackend implements ReporterBackend {
+
+    static final class Record {
+        final String type;
+        final String name;
+        final Map<String, Object> attributes;
+        final String json;
+        final String apiKey;
+        final Object[] arguments;
+        final long timestampNanos;
+
+        Record(String type, String name, Map<String, Object> attributes, String json) {
+            this(type, name, attributes, json, null, null);
+        }
+
+        Record(String type, String name, Map<String, Object> attributes, String json, String apiKey, Object[] arguments) {
+            this.type = type;
+            this.name = name;
+            this.attributes = attributes;
+            this.json = json;
+            this.apiKey = apiKey;
+            this.arguments = arguments;
+            this.timestampNanos = System.nanoTime();
+        }
+    }
+
+    static final String TYPE_EVENT = "event";
+    static final String TYPE_ERROR = "error";
+    static final String TYPE_UNHANDLED_EXCEPTION = "unhandledException";
+    static final String TYPE_USER_PROFILE = "userProfile";
+    static final String TYPE_USER_PROFILE_ID = "userProfileID";
+    static final String TYPE_APP_OPEN = "appOpen";
+    static final String TYPE_REFERRAL_URL = "referralUrl";
+    static final String TYPE_PAUSE_SESSION = "pauseSession";
+    static final String TYPE_RESUME_SESSION = "resumeSession";
+    static final String TYPE_LOCATION = "location";
+    // setLocationTracking and setDataSendingEnabled, the name is the method name
+    static final String TYPE_SETTING = "setting";
+    // Any IReporter call, the name is the method name
+    static final String TYPE_REPORTER_CALL = "reporterCall";
+
+    private final List<Record> records = new ArrayList<Record>();
+    private final AtomicLong activations = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final int maxRecords;
+    private long overflowCount = 0;
+
+    RecordingReporterBackend(int maxRecords) {
+        this.maxRecords = maxRecords;
+    }
+
+    @Override
+    public void activate(Context context, AppMetricaConfig config) {
+        activations.incrementAndGet();
+    }
+
+    @Override
+    public void enableActivityAutoTracking(Application application) {
+    }
+
+    @Override
+    public void reportEvent(String eventName) {
+        add(new Record(TYPE_EVENT, eventName, null, null));
+    }
+
+    @Override
+    public void reportEvent(String eventName, Map<String, Object> attributes) {
+        add(new Record(TYPE_EVENT, eventName, attributes, null));
+    }
+
+    @Override
+    public void reportEvent(String eventName, String json) {
+        add(new Record(TYPE_EVENT, eventName, null, json));
+    }
+
+    @Override
+    public void reportError(String message, Throwable error) {
+        add(new Record(TYPE_ERROR, message, null, null));
+    }
+
+    @Override
+    public void reportError(String groupIdentifier, String message, Throwable error) {
+        add(new Record(TYPE_ERROR, message, null, groupIdentifier));
+    }
+
+    @Override
+    public void reportUnhandledException(Throwable exception) {
+        add(new Record(TYPE_UNHANDLED_EXCEPTION, exception.getMessage(), null, null));
+    }
+
+    @Override
+    public void reportUserProfile(UserProfile userProfile) {
+        add(new Record(TYPE_USER_PROFILE, null, null, null));
+    }
+
+    @Override
+    public void setUserProfileID(String userProfileID) {
+        add(new Record(TYPE_USER_PROFILE_ID, userProfileID, null, null));
+    }
+
+    @Override
+    public void reportAppOpen(String deeplink) {
+        add(new Record(TYPE_APP_OPEN, deeplink, null, null));
+    }
+
+    @Override
+    public void reportAppOpen(Activity activity) {
+        Intent intent = activity.getIntent();
+        add(new Record(TYPE_APP_OPEN, intent == null ? null : intent.getDataString(), null, null));
+    }
+
+    @Override
+    public void reportAppOpen(Intent intent) {
+        add(new Record(TYPE_APP_OPEN, intent == null ? null : intent.getDataString(), null, null));
+    }
+
+    @Override
+    public void reportReferralUrl(String referralUrl) {
+        add(new Record(TYPE_REFERRAL_URL, referralUrl, null, null));
+    }
+
+    @Override
+    public void pauseSession(Activity activity) {
+        add(new Record(TYPE_PAUSE_SESSION, null, null, null));
+    }
+
+    @Override
+    public void resumeSession(Activity activity) {
+        add(new Record(TYPE_RESUME_SESSION, null, null, null));
+    }
+
+    @Override
+    public void setLocation(Location location) {
+        add(new Record(TYPE_LOCATION, null, null, null, null, new Object[]{location}));
+    }
+
+    @Override
+    public void setLocationTracking(boolean enabled) {
+        add(new Record(TYPE_SETTING, "setLocationTracking", null, null, null, new Object[]{enabled}));
+    }
+
+    @Override
+    public void setDataSendingEnabled(boolean enabled) {
+        add(new Record(TYPE_SETTING, "setDataSendingEnabled", null, null, null, new Object[]{enabled}));
+    }
+
+    /**
+     * There is no startup response without the SDK, so every request fails.
+     */
+    @Override
+    public void requestStartupParams(Context context, StartupParamsCallback callback, List<String> params) {
+        callback.onRequestError(StartupParamsCallback.Reason.UNKNOWN, null);
+    }
+
+    @Override
+    public void sendEventsBuffer() {
+        flushes.incrementAndGet();
+    }
+
+    @Override
+    public void activateReporter(Context context, ReporterConfig config) {
+    }
+
+    /**
+     * @return a proxy recording every call as {@link #TYPE_REPORTER_CALL}
+     */
+    @Override
+    public IReporter getReporter(Context context, final String apiKey) {
+        return (IReporter) Proxy.newProxyInstance(IReporter.class.getClassLoader(), new Class<?>[]{IReporter.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getDeclaringClass() == Object.class) {
+                            if ("equals".equals(method.getName())) {
+                                return proxy == args[0];
+                            }
+                            if ("hashCode".equals(method.getName())) {
+                                return System.identityHashCode(proxy);
+                            }
+                            return "RecordingReporter(" + apiKey + ")";
+                        }
+                        add(new Record(TYPE_REPORTER_CALL, method.getName(), null, null, apiKey, args));
+                        return null;
+                    }
+                });
+    }
+
+    private synchronized void add(Record record) {
+        if (records.size() < maxRecords) {
+            records.add(record);
+        } else {
+            overflowCount++;
+        }
+    }
+
+    synchronized List<Record> getRecords() {
+        return new ArrayList<Record>(records);
+    }
+
+    synchronized int getRecordCount() {
+        return records.size();
+    }
+
+    synchronized long getOverflowCount() {
+        return overflowCount;
+    }
+
+    synchronized void clear() {
+        records.clear();
+        overflowCount = 0;
+    }
+
+    long getActivationCount() {
+        return activations.get();
+    }
+
+    long getFlushCount() {
+        return flushes.get();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package com.android.installreferrer.api;
+
+import android.content.Context;
+import android.os.RemoteException;
+
+/**
+ * Stand-in for the Play install referrer client that reports the feature as unsupported,
+ * so benchmarks make no IPC.
+ */
+public abstract class InstallReferrerClient {
+
+    public @interface InstallReferrerResponse {
+        int SERVICE_DISCONNECTED = -1;
+        int OK = 0;
+        int SERVICE_UNAVAILABLE = 1;
+        int FEATURE_NOT_SUPPORTED = 2;
+        int DEVELOPER_ERROR = 3;
+        int PERMISSION_ERROR = 4;
+    }
+
+    public static Builder newBuilder(Context context) {
+        return new Builder();
+    }
+
+    public abstract boolean isReady();
+
+    public abstract void startConnection(InstallReferrerStateListener listener);
+
+    public abstract void endConnection();
+
+    public abstract ReferrerDetails getInstallReferrer() throws RemoteException;
+
+    public static final class Builder {
+
+        public InstallReferrerClient build() {
+            return new InstallReferrerClient() {
+                @Override
+                public boolean isReady() {
+                    return false;
+                }
+
+                @Override
+                public void startConnection(InstallReferrerStateListener listener) {
+                    listener.onInstallReferrerSetupFinished(InstallReferrerResponse.FEATURE_NOT_SUPPORTED);
+                }
+
+                @Override
+                public void endConnection() {
+                }
+
+                @Override
+                public ReferrerDetails getInstallReferrer() {
+                    throw new IllegalStateException("Not connected");
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,16 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package com.android.installreferrer.api;
+
+public interface InstallReferrerStateListener {
+
+    void onInstallReferrerSetupFinished(int responseCode);
+
+    void onInstallReferrerServiceDisconnected();
+}
@@ -0,0 +1,153 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.Intent;
+import android.location.Location;
+
+import io.appmetrica.analytics.profile.UserProfile;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * No-op stand-in for the AppMetrica SDK entry point, so benchmarks measure only the plugin.
+ */
+public final class AppMetrica {
+
+    private static final IReporter NO_OP_REPORTER = new IReporter() {
+        @Override
+        public void reportEvent(String eventName) {
+        }
+
+        @Override
+        public void reportEvent(String eventName, String json) {
+        }
+
+        @Override
+        public void reportEvent(String eventName, Map<String, Object> attributes) {
+        }
+
+        @Override
+        public void reportError(String message, Throwable error) {
+        }
+
+        @Override
+        public void reportUnhandledException(Throwable exception) {
+        }
+
+        @Override
+        public void resumeSession() {
+        }
+
+        @Override
+        public void pauseSession() {
+        }
+
+        @Override
+        public void setUserProfileID(String userProfileID) {
+        }
+
+        @Override
+        public void reportUserProfile(UserProfile profile) {
+        }
+
+        @Override
+        public void sendEventsBuffer() {
+        }
+
+        @Override
+        public void setDataSendingEnabled(boolean enabled) {
+        }
+    };
+
+    private AppMetrica() {
+    }
+
+    public static void activate(Context context, AppMetricaConfig config) {
+    }
+
+    public static void activateReporter(Context context, ReporterConfig config) {
+    }
+
+    public static void enableActivityAutoTracking(Application application) {
+    }
+
+    public static int getLibraryApiLevel() {
+        return 0;
+    }
+
+    public static String getLibraryVersion() {
+        return "benchmark";
+    }
+
+    public static IReporter getReporter(Context context, String apiKey) {
+        return NO_OP_REPORTER;
+    }
+
+    public static void pauseSession(Activity activity) {
+    }
+
+    public static void resumeSession(Activity activity) {
+    }
+
+    public static void reportAppOpen(String deeplink) {
+    }
+
+    public static void reportAppOpen(Activity activity) {
+    }
+
+    public static void reportAppOpen(Intent intent) {
+    }
+
+    public static void reportError(String message, Throwable error) {
+    }
+
+    public static void reportError(String groupIdentifier, String message, Throwable error) {
+    }
+
+    public static void reportUnhandledException(Throwable exception) {
+    }
+
+    public static void reportEvent(String eventName) {
+    }
+
+    public static void reportEvent(String eventName, Map<String, Object> attributes) {
+    }
+
+    public static void reportEvent(String eventName, String json) {
+    }
+
+    public static void reportReferralUrl(String referralUrl) {
+    }
+
+    public static void requestStartupParams(Context context, StartupParamsCallback callback, List<String> params) {
+    }
+
+    public static void sendEventsBuffer() {
+    }
+
+    public static void setLocation(Location location) {
+    }
+
+    public static void setLocationTracking(boolean enabled) {
+    }
+
+    public static void setDataSendingEnabled(boolean enabled) {
+    }
+
+    public static void setUserProfileID(String userProfileID) {
+    }
+
+    public static void reportUserProfile(UserProfile profile) {
+    }
+}
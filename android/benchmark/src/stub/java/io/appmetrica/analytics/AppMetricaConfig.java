@@ -0,0 +1,81 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics;
+
+import android.location.Location;
+
+public class AppMetricaConfig {
+
+    public final String apiKey;
+
+    private AppMetricaConfig(String apiKey) {
+        this.apiKey = apiKey;
+    }
+
+    public static Builder newConfigBuilder(String apiKey) {
+        return new Builder(apiKey);
+    }
+
+    public static class Builder {
+
+        private final String apiKey;
+
+        private Builder(String apiKey) {
+            this.apiKey = apiKey;
+        }
+
+        public Builder withAppVersion(String appVersion) {
+            return this;
+        }
+
+        public Builder withCrashReporting(boolean enabled) {
+            return this;
+        }
+
+        public Builder handleFirstActivationAsUpdate(boolean value) {
+            return this;
+        }
+
+        public Builder withLocation(Location location) {
+            return this;
+        }
+
+        public Builder withLocationTracking(boolean enabled) {
+            return this;
+        }
+
+        public Builder withLogs() {
+            return this;
+        }
+
+        public Builder withMaxReportsInDatabaseCount(int maxReportsInDatabaseCount) {
+            return this;
+        }
+
+        public Builder withNativeCrashReporting(boolean enabled) {
+            return this;
+        }
+
+        public Builder withPreloadInfo(PreloadInfo preloadInfo) {
+            return this;
+        }
+
+        public Builder withSessionTimeout(int sessionTimeout) {
+            return this;
+        }
+
+        public Builder withDataSendingEnabled(boolean enabled) {
+            return this;
+        }
+
+        public AppMetricaConfig build() {
+            return new AppMetricaConfig(apiKey);
+        }
+    }
+}
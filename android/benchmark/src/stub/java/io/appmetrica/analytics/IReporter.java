@@ -0,0 +1,38 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics;
+
+import io.appmetrica.analytics.profile.UserProfile;
+
+import java.util.Map;
+
+public interface IReporter {
+
+    void reportEvent(String eventName);
+
+    void reportEvent(String eventName, String json);
+
+    void reportEvent(String eventName, Map<String, Object> attributes);
+
+    void reportError(String message, Throwable error);
+
+    void reportUnhandledException(Throwable exception);
+
+    void resumeSession();
+
+    void pauseSession();
+
+    void setUserProfileID(String userProfileID);
+
+    void reportUserProfile(UserProfile profile);
+
+    void sendEventsBuffer();
+
+    void setDataSendingEnabled(boolean enabled);
+}
@@ -0,0 +1,33 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics;
+
+public class PreloadInfo {
+
+    private PreloadInfo() {
+    }
+
+    public static Builder newBuilder(String trackingId) {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private Builder() {
+        }
+
+        public Builder setAdditionalParams(String key, String value) {
+            return this;
+        }
+
+        public PreloadInfo build() {
+            return new PreloadInfo();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics;
+
+public class ReporterConfig {
+
+    public final String apiKey;
+
+    private ReporterConfig(String apiKey) {
+        this.apiKey = apiKey;
+    }
+
+    public static Builder newConfigBuilder(String apiKey) {
+        return new Builder(apiKey);
+    }
+
+    public static class Builder {
+
+        private final String apiKey;
+
+        private Builder(String apiKey) {
+            this.apiKey = apiKey;
+        }
+
+        public Builder withLogs() {
+            return this;
+        }
+
+        public Builder withSessionTimeout(int sessionTimeout) {
+            return this;
+        }
+
+        public Builder withDataSendingEnabled(boolean enabled) {
+            return this;
+        }
+
+        public Builder withMaxReportsInDatabaseCount(int maxReportsInDatabaseCount) {
+            return this;
+        }
+
+        public Builder withUserProfileID(String userProfileID) {
+            return this;
+        }
+
+        public ReporterConfig build() {
+            return new ReporterConfig(apiKey);
+        }
+    }
+}
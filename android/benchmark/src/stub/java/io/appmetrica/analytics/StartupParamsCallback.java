@@ -0,0 +1,49 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics;
+
+public interface StartupParamsCallback {
+
+    String APPMETRICA_DEVICE_ID = "appmetrica_device_id";
+    String APPMETRICA_DEVICE_ID_HASH = "appmetrica_device_id_hash";
+    String APPMETRICA_UUID = "appmetrica_uuid";
+
+    void onReceive(Result result);
+
+    void onRequestError(Reason reason, Result result);
+
+    class Result {
+
+        public final String deviceId;
+        public final String deviceIdHash;
+        public final String uuid;
+
+        public Result(String deviceId, String deviceIdHash, String uuid) {
+            this.deviceId = deviceId;
+            this.deviceIdHash = deviceIdHash;
+            this.uuid = uuid;
+        }
+    }
+
+    class Reason {
+
+        public static final Reason UNKNOWN = new Reason("UNKNOWN");
+
+        public final String value;
+
+        public Reason(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.profile;
+
+public final class Attribute {
+
+    private Attribute() {
+    }
+
+    public static NameAttribute name() {
+        return new NameAttribute();
+    }
+
+    public static GenderAttribute gender() {
+        return new GenderAttribute();
+    }
+
+    public static BirthDateAttribute birthDate() {
+        return new BirthDateAttribute();
+    }
+
+    public static NotificationsEnabledAttribute notificationsEnabled() {
+        return new NotificationsEnabledAttribute();
+    }
+
+    public static StringAttribute customString(String key) {
+        return new StringAttribute();
+    }
+
+    public static NumberAttribute customNumber(String key) {
+        return new NumberAttribute();
+    }
+
+    public static BooleanAttribute customBoolean(String key) {
+        return new BooleanAttribute();
+    }
+}
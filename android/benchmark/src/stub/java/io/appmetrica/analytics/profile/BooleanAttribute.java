@@ -0,0 +1,23 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.profile;
+
+public class BooleanAttribute {
+
+    BooleanAttribute() {
+    }
+
+    public UserProfileUpdate withValue(boolean value) {
+        return new UserProfileUpdate();
+    }
+
+    public UserProfileUpdate withValueReset() {
+        return new UserProfileUpdate();
+    }
+}
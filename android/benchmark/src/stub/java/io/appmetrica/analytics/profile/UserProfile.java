@@ -0,0 +1,46 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.profile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class UserProfile {
+
+    private final List<UserProfileUpdate> updates;
+
+    private UserProfile(List<UserProfileUpdate> updates) {
+        this.updates = updates;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public List<UserProfileUpdate> getUserProfileUpdates() {
+        return updates;
+    }
+
+    public static class Builder {
+
+        private final List<UserProfileUpdate> updates = new ArrayList<UserProfileUpdate>();
+
+        private Builder() {
+        }
+
+        public Builder apply(UserProfileUpdate update) {
+            updates.add(update);
+            return this;
+        }
+
+        public UserProfile build() {
+            return new UserProfile(updates);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import android.app.Application;
+import android.content.Context;
+import android.util.Log;
+
+import com.facebook.react.bridge.ReadableMap;
+
+import io.appmetrica.analytics.AppMetricaConfig;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Process-wide activation state: inactive -> activating -> active.
+ * The config is built once and AppMetrica is activated at most once, no matter how many
+ * static entry points and JS activate() calls race for it.
+ */
+final class ActivationController {
+
+    enum State {
+        INACTIVE,
+        ACTIVATING,
+        ACTIVE
+    }
+
+    private static final String TAG = "AppMetricaActivation";
+
+    private static final ActivationController INSTANCE = new ActivationController();
+
+    private final AtomicReference<State> state = new AtomicReference<State>(State.INACTIVE);
+    private final AtomicReference<AppMetricaConfig> config = new AtomicReference<AppMetricaConfig>();
+    private volatile Context applicationContext;
+    private volatile PluginStorage storage;
+
+    private ActivationController() {
+    }
+
+    static ActivationController getInstance() {
+        return INSTANCE;
+    }
+
+    void attachContext(Context context) {
+        if (applicationContext == null) {
+            synchronized (this) {
+                if (applicationContext == null) {
+                    storage = new PluginStorage(context);
+                    applicationContext = context.getApplicationContext();
+                    if (applicationContext instanceof Application) {
+                        SessionTracker.getInstance().register((Application) applicationContext);
+                    }
+                }
+            }
+        }
+    }
+
+    Context getApplicationContext() {
+        return applicationContext;
+    }
+
+    State getState() {
+        return state.get();
+    }
+
+    boolean isActive() {
+        return state.get() == State.ACTIVE;
+    }
+
+    /**
+     * Memoizes the config built from the first activation params, later params are ignored.
+     */
+    void setConfig(ReadableMap params) {
+        if (config.get() == null) {
+            long startTime = PluginStats.start();
+            AppMetricaConfig appMetricaConfig = Utils.toAppMetricaConfig(params);
+            PluginStats.record(PluginStats.Timer.CONFIG_CONVERSION, startTime);
+            if (config.compareAndSet(null, appMetricaConfig)) {
+                SessionTracker.getInstance().setPolicy(
+                        params.hasKey("nativeSessionTracking") && params.getBoolean("nativeSessionTracking"),
+                        params.hasKey("sessionPauseDelay")
+                                ? (long) (params.getDouble("sessionPauseDelay") * 1000)
+                                : SessionTracker.DEFAULT_PAUSE_DELAY_MILLIS);
+            }
+        }
+    }
+
+    boolean hasConfig() {
+        return config.get() != null;
+    }
+
+    /**
+     * Saves the params for the next process start, see {@link #loadSavedConfig()}.
+     */
+    void saveConfig(ReadableMap params) {
+        PluginStorage pluginStorage = storage;
+        if (pluginStorage == null) {
+            return;
+        }
+        try {
+            pluginStorage.putActivationConfig(Utils.toJson(params).toString());
+        } catch (JSONException e) {
+            Log.w(TAG, "Failed to save activation config", e);
+        }
+    }
+
+    private void loadSavedConfig() {
+        PluginStorage pluginStorage = storage;
+        if (pluginStorage == null || config.get() != null) {
+            return;
+        }
+        String json = pluginStorage.getActivationConfig();
+        if (json == null) {
+            return;
+        }
+        try {
+            setConfig(Utils.toReadableMap(new JSONObject(json)));
+        } catch (Throwable error) {
+            Log.w(TAG, "Failed to restore activation config", error);
+        }
+    }
+
+    /**
+     * Activates AppMetrica with the memoized config if it is not active yet.
+     * Falls back to the config saved by a previous process if none was set.
+     * Never waits for an activation running on another thread, callers may be on the main thread.
+     *
+     * @return true if AppMetrica is active after the call, false while another thread is activating it
+     */
+    boolean activate() {
+        if (state.get() == State.ACTIVE) {
+            return true;
+        }
+        if (config.get() == null) {
+            loadSavedConfig();
+        }
+        AppMetricaConfig appMetricaConfig = config.get();
+        Context context = applicationContext;
+        if (appMetricaConfig == null || context == null) {
+            return false;
+        }
+        if (!state.compareAndSet(State.INACTIVE, State.ACTIVATING)) {
+            return state.get() == State.ACTIVE;
+        }
+
+        State result = State.INACTIVE;
+        long startTime = PluginStats.start();
+        try {
+            ReporterBackends.get().activate(context, appMetricaConfig);
+            // Native session tracking replaces the SDK one, which resumes and pauses on every activity
+            if (context instanceof Application && !SessionTracker.getInstance().isEnabled()) {
+                ReporterBackends.get().enableActivityAutoTracking((Application) context);
+            }
+            result = State.ACTIVE;
+        } catch (Throwable error) {
+            Log.e(TAG, "Failed to activate AppMetrica", error);
+        } finally {
+            PluginStats.record(PluginStats.Timer.SDK_ACTIVATION, startTime);
+            state.set(result);
+        }
+        if (result == State.ACTIVE) {
+            ReportDispatcher.getInstance().dispatchControl(new Runnable() {
+                @Override
+                public void run() {
+                    PendingReportQueue.getInstance().replay();
+                }
+            });
+            SessionTracker.getInstance().onActivated();
+            InstallReferrerCache.getInstance().onActivated(context);
+        }
+        return result == State.ACTIVE;
+    }
+}
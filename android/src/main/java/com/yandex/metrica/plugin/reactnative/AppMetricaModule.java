@@ -9,298 +9,1211 @@
 package io.appmetrica.analytics.plugin.reactnative;
 
 import android.app.Activity;
-import android.app.Application;
+import android.content.Context;
 import android.content.Intent;
+import android.location.Location;
+import android.os.SystemClock;
 import android.util.Log;
 
+import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Callback;
+import com.facebook.react.bridge.LifecycleEventListener;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
-import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.ReadableType;
-import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.WritableMap;
 
 import io.appmetrica.analytics.AppMetrica;
-import io.appmetrica.analytics.AppMetricaConfig;
-import io.appmetrica.analytics.profile.Attribute;
-import io.appmetrica.analytics.profile.GenderAttribute;
+import io.appmetrica.analytics.IReporter;
 import io.appmetrica.analytics.profile.UserProfile;
-import io.appmetrica.analytics.profile.UserProfileUpdate;
-import io.appmetrica.analytics.StartupParamsCallback;
-import java.util.Arrays;
 
-public class AppMetricaModule extends ReactContextBaseJavaModule {
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+public class AppMetricaModule extends AppMetricaModuleSpec implements LifecycleEventListener {
+
+    static final String NAME = "AppMetrica";
 
     private static final String TAG = "AppMetricaModule";
+    private static final int DEFAULT_JOURNAL_SIZE = 256 * 1024;
 
     private final ReactApplicationContext reactContext;
-    
-    static ReactApplicationContext reactApplicationContext;
-    static ReadableMap activateParams = null;
-    static String activateKey = null;
+    private final ReportDispatcher dispatcher = ReportDispatcher.getInstance();
+    private final ActivationController activation = ActivationController.getInstance();
+    private final PendingReportQueue pendingReports = PendingReportQueue.getInstance();
+    private final SpanTracker spans = SpanTracker.getInstance();
+    private final SessionTracker sessions = SessionTracker.getInstance();
+    private final JsonPayloadValidator jsonValidator = new JsonPayloadValidator();
+    private final EventSchemaRegistry eventSchemas = new EventSchemaRegistry();
+    private final EventLimiter eventLimiter = new EventLimiter(dispatcher);
+    private final MetricsAggregator metrics = new MetricsAggregator();
+    private final UserProfileDiffer profileDiffer = new UserProfileDiffer();
+    private final ErrorDeduplicator errorDeduplicator = new ErrorDeduplicator(dispatcher);
+    private final LocationThrottle locationThrottle = new LocationThrottle();
+    private final FlushScheduler flushScheduler;
+    private final ReporterPool reporterPool;
+    // Left by the previous process in the journal, reported once AppMetrica is active
+    private List<EventJournal.Record> recoveredReports;
+    private final Runnable hostPauseTask = new Runnable() {
+        @Override
+        public void run() {
+            metrics.flush();
+            spans.flush();
+            errorDeduplicator.flush();
+            flushScheduler.onHostPause();
+        }
+    };
+    private final Runnable metricsTimerTask = new Runnable() {
+        @Override
+        public void run() {
+            if (invalidated) {
+                return;
+            }
+            metrics.flush();
+            long intervalMillis = metricsFlushIntervalMillis;
+            if (intervalMillis > 0) {
+                metricsTimer = dispatcher.schedule(this, intervalMillis);
+            } else {
+                metricsTimerStarted = false;
+            }
+        }
+    };
+    // Interval of 0 or less turns the timer off, metrics are then only reported on pause
+    private volatile long metricsFlushIntervalMillis = 60000L;
+    private boolean metricsTimerStarted = false;
+    private long pluginStatsReportIntervalMillis = 0;
+    private final Runnable pluginStatsReportTask = new Runnable() {
+        @Override
+        public void run() {
+            if (invalidated) {
+                return;
+            }
+            if (activation.isActive()) {
+                ReporterBackends.get().reportEvent(PluginStats.SUMMARY_EVENT_NAME, collectPluginStats());
+            }
+            pluginStatsTimer = dispatcher.schedule(this, pluginStatsReportIntervalMillis);
+        }
+    };
+    // The dispatcher outlives the module, its timers stop once React Native drops the module
+    private volatile boolean invalidated = false;
+    private volatile ScheduledFuture<?> metricsTimer;
+    private volatile ScheduledFuture<?> pluginStatsTimer;
 
     public AppMetricaModule(ReactApplicationContext reactContext) {
         super(reactContext);
         this.reactContext = reactContext;
-        reactApplicationContext = reactContext;
+        this.flushScheduler = new FlushScheduler(dispatcher, reactContext.getApplicationContext());
+        this.reporterPool = new ReporterPool(reactContext.getApplicationContext());
+        activation.attachContext(reactContext);
+        reactContext.addLifecycleEventListener(this);
+    }
+
+    @Override
+    public void onHostResume() {
+        sessions.onHostResume(getCurrentActivity());
+    }
+
+    @Override
+    public void onHostPause() {
+        dispatcher.dispatchControl(hostPauseTask);
+        dispatcher.flush();
+    }
+
+    @Override
+    public void onHostDestroy() {
+        dispatcher.dispatchControl(hostPauseTask);
+        dispatcher.flush();
+    }
+
+    /**
+     * Stops the timers of this module, called when the React context is torn down.
+     * Not annotated: older React Native versions only have {@link #onCatalystInstanceDestroy()}.
+     */
+    public void invalidate() {
+        invalidated = true;
+        cancel(metricsTimer);
+        cancel(pluginStatsTimer);
+        reactContext.removeLifecycleEventListener(this);
+    }
+
+    private static void cancel(ScheduledFuture<?> timer) {
+        if (timer != null) {
+            timer.cancel(false);
+        }
+    }
+
+    public void onCatalystInstanceDestroy() {
+        invalidate();
     }
 
     @Override
     public String getName() {
-        return "AppMetrica";
+        return NAME;
     }
     
+    /**
+     * Activates AppMetrica with the config saved by the last JS activate() call.
+     * Call it from Application.onCreate to start collecting before the JS bundle is loaded.
+     *
+     * @return true if AppMetrica is active after the call
+     */
+    public static boolean staticActivateWithSavedConfig(Context context) {
+        ActivationController activation = ActivationController.getInstance();
+        activation.attachContext(context);
+        return activation.activate();
+    }
+
+    /**
+     * Starts a timing span, for example in {@code MainActivity.onCreate}. JS can end it with
+     * {@code endSpan} if it gets the ID.
+     *
+     * @return span ID, or -1 if too many spans are open
+     */
+    public static int staticStartSpan(String name, Map<String, Object> attributes) {
+        return SpanTracker.getInstance().start(name, attributes);
+    }
+
+    public static void staticEndSpan(int spanId) {
+        SpanTracker.getInstance().end(spanId);
+    }
+
     public static void staticReportAppOpen(Intent intent) {
-        if (activateMetrics()) {
-            AppMetrica.reportAppOpen(intent);
+        if (ActivationController.getInstance().activate()) {
+            ReporterBackends.get().reportAppOpen(intent);
+        } else if (intent != null) {
+            reportAfterActivation(PendingReportQueue.TYPE_APP_OPEN, intent.getDataString());
         }
     }
 
     public static void staticReportAppOpen(Activity activity) {
-        if (activateMetrics()) {
-            AppMetrica.reportAppOpen(activity);
+        ActivationController activation = ActivationController.getInstance();
+        activation.attachContext(activity);
+        if (activation.activate()) {
+            ReporterBackends.get().reportAppOpen(activity);
+        } else if (activity.getIntent() != null) {
+            reportAfterActivation(PendingReportQueue.TYPE_APP_OPEN, activity.getIntent().getDataString());
         }
     }
 
     public static void staticReportAppOpen(String deeplink) {
-        if (activateMetrics()) {
-            AppMetrica.reportAppOpen(deeplink);
+        if (ActivationController.getInstance().activate()) {
+            ReporterBackends.get().reportAppOpen(deeplink);
+        } else {
+            reportAfterActivation(PendingReportQueue.TYPE_APP_OPEN, deeplink);
         }
     }
 	
     public static void staticReportReferralUrl(String deeplink) {
-        if (activateMetrics()) {
-            AppMetrica.reportReferralUrl(deeplink);
+        if (ActivationController.getInstance().activate()) {
+            ReporterBackends.get().reportReferralUrl(deeplink);
+        } else {
+            reportAfterActivation(PendingReportQueue.TYPE_REFERRAL_URL, deeplink);
         }
     }
 
-    private static boolean activateMetrics() {
-        if (activateParams != null) {
-            staticActivateWithConfig(activateParams);
-            return true;
-        } else if (activateKey != null) {
-            staticActivateWithApiKey(activateKey);
-            return true;
+    /**
+     * Keeps a report from a static entry point in {@link PendingReportQueue} while AppMetrica is
+     * not active yet, for example while another thread is activating it, instead of waiting.
+     */
+    private static void reportAfterActivation(final byte type, final String value) {
+        if (value == null) {
+            return;
         }
+        ReportDispatcher.getInstance().dispatchControl(new Runnable() {
+            @Override
+            public void run() {
+                PendingReportQueue pendingReports = PendingReportQueue.getInstance();
+                pendingReports.offer(type, value, null);
+                // Activation finished in between, its replay has already run
+                if (ActivationController.getInstance().isActive()) {
+                    pendingReports.replay();
+                }
+            }
+        });
+    }
 
-        return false;
+    @ReactMethod
+    public void activate(final ReadableMap configMap) {
+        long startTime = PluginStats.start();
+        try {
+            if (configMap.hasKey("pluginStats")) {
+                PluginStats.setEnabled(configMap.getBoolean("pluginStats"));
+            }
+            if (configMap.hasKey("pluginStatsReportInterval") && pluginStatsReportIntervalMillis == 0) {
+                pluginStatsReportIntervalMillis = configMap.getInt("pluginStatsReportInterval") * 1000L;
+                if (pluginStatsReportIntervalMillis > 0) {
+                    pluginStatsTimer = dispatcher.schedule(pluginStatsReportTask, pluginStatsReportIntervalMillis);
+                }
+            }
+            if (configMap.hasKey("dispatchOverflowPolicy")) {
+                dispatcher.setOverflowPolicy(Utils.toOverflowPolicy(configMap.getString("dispatchOverflowPolicy")));
+            }
+            if (configMap.hasKey("maxEventJsonLength")) {
+                jsonValidator.setMaxLength(configMap.getInt("maxEventJsonLength"));
+            }
+            if (configMap.hasKey("maxEventJsonDepth")) {
+                jsonValidator.setMaxDepth(configMap.getInt("maxEventJsonDepth"));
+            }
+            if (configMap.hasKey("metricsFlushInterval")) {
+                metricsFlushIntervalMillis = configMap.getInt("metricsFlushInterval") * 1000L;
+            }
+            if (configMap.hasKey("maxMetricKeys")) {
+                final int maxMetricKeys = configMap.getInt("maxMetricKeys");
+                dispatcher.dispatchControl(new Runnable() {
+                    @Override
+                    public void run() {
+                        metrics.setMaxKeys(maxMetricKeys);
+                    }
+                });
+            }
+            if (configMap.hasKey("errorDedupWindow")) {
+                final long windowMillis = configMap.getInt("errorDedupWindow") * 1000L;
+                dispatcher.dispatchControl(new Runnable() {
+                    @Override
+                    public void run() {
+                        errorDeduplicator.setWindowMillis(windowMillis);
+                    }
+                });
+            }
+            if (configMap.hasKey("flushPolicy")) {
+                final FlushScheduler.Policy flushPolicy = Utils.toFlushPolicy(configMap.getMap("flushPolicy"));
+                dispatcher.dispatchControl(new Runnable() {
+                    @Override
+                    public void run() {
+                        flushScheduler.setPolicy(flushPolicy);
+                    }
+                });
+            }
+            if (configMap.hasKey("locationThrottle")) {
+                ReadableMap throttleMap = configMap.getMap("locationThrottle");
+                final long minIntervalMillis = throttleMap.hasKey("minInterval")
+                        ? (long) (throttleMap.getDouble("minInterval") * 1000) : 0;
+                final float minDistanceMeters = throttleMap.hasKey("minDistance")
+                        ? (float) throttleMap.getDouble("minDistance") : 0;
+                dispatcher.dispatchControl(new Runnable() {
+                    @Override
+                    public void run() {
+                        locationThrottle.setPolicy(minIntervalMillis, minDistanceMeters);
+                    }
+                });
+            }
+            if (configMap.hasKey("maxOpenSpans")) {
+                spans.setMaxOpenSpans(configMap.getInt("maxOpenSpans"));
+            }
+            if (configMap.hasKey("eventLimits")) {
+                eventLimiter.setPolicy(Utils.toEventLimiterPolicy(configMap.getMap("eventLimits")));
+            }
+            int maxJournalSize = 0;
+            if (configMap.hasKey("eventJournal")) {
+                ReadableMap journalMap = configMap.getMap("eventJournal");
+                maxJournalSize = journalMap.hasKey("maxSize") ? journalMap.getInt("maxSize") : DEFAULT_JOURNAL_SIZE;
+            }
+            final int journalSize = maxJournalSize;
+            // Reports journaled before this call are dispatched before the activation
+            final long journaledPosition = getJournalTail();
+            dispatcher.dispatchControl(new Runnable() {
+                @Override
+                public void run() {
+                    if (journalSize > 0) {
+                        openJournal(journalSize);
+                    }
+                    if (activation.hasConfig()) {
+                        Log.w(TAG, "AppMetrica is already configured, new config is ignored");
+                    } else {
+                        activation.setConfig(configMap);
+                    }
+                    activation.saveConfig(configMap);
+                    if (activation.activate()) {
+                        // Hand over what waited for the activation before acknowledging it
+                        replayWaitingReports();
+                        checkpointJournal(journaledPosition);
+                    }
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.ACTIVATE, startTime);
+        }
     }
 
-    private static void staticActivateWithApiKey(String key) {
-        activateKey = key;
-        AppMetricaConfig.Builder configBuilder = AppMetricaConfig.newConfigBuilder(key).withLogs();
-        AppMetrica.activate(reactApplicationContext.getApplicationContext(), configBuilder.build());
-        Activity activity = reactApplicationContext.getCurrentActivity();
-        if (activity != null) {
-            Application application = activity.getApplication();
-            AppMetrica.enableActivityAutoTracking(application);
+    /**
+     * Opens the journal and keeps what the previous process left in it until AppMetrica is active.
+     * Must be called on the {@link ReportDispatcher} thread.
+     */
+    private void openJournal(int maxSize) {
+        EventJournal journal = EventJournal.open(reactContext, maxSize);
+        if (journal == null) {
+            return;
+        }
+        List<EventJournal.Record> records = journal.takeRecovered();
+        if (!records.isEmpty()) {
+            recoveredReports = records;
         }
     }
 
-    private static void staticActivateWithConfig(ReadableMap params) {
-        activateParams = params;
-        AppMetrica.activate(reactApplicationContext.getApplicationContext(), Utils.toAppMetricaConfig(params));
-        Activity activity = reactApplicationContext.getCurrentActivity();
-        if (activity != null) {
-            Application application = activity.getApplication();
-            AppMetrica.enableActivityAutoTracking(application);
+    /**
+     * Reports the records recovered from the journal, each is acknowledged once the SDK has it.
+     * Must be called on the {@link ReportDispatcher} thread once AppMetrica is active.
+     */
+    private void replayRecoveredReports() {
+        List<EventJournal.Record> records = recoveredReports;
+        recoveredReports = null;
+        for (EventJournal.Record record : records) {
+            try {
+                switch (record.type) {
+                    case EventJournal.TYPE_EVENT:
+                        reportEventJsonInternal(record.value, record.payload, record.position);
+                        break;
+                    case EventJournal.TYPE_EVENTS:
+                        reportEventsInternal(Utils.toReadableArray(new JSONArray(record.payload)), record.position);
+                        break;
+                    case EventJournal.TYPE_USER_PROFILE:
+                        ReadableMap userProfileParam = record.payload == null ? null
+                                : Utils.toReadableMap(new JSONObject(record.payload));
+                        reportUserProfileInternal(record.value, userProfileParam, null, record.position);
+                        break;
+                }
+            } catch (JSONException e) {
+                Log.w(TAG, "Journal record dropped: " + e.getMessage());
+                checkpointJournal(record.position);
+            }
+        }
+    }
+
+    private long getJournalTail() {
+        EventJournal journal = EventJournal.getInstance();
+        return journal == null ? EventJournal.NO_POSITION : journal.getTail();
+    }
+
+    private long appendToJournal(byte type, String value, String payload) {
+        EventJournal journal = EventJournal.getInstance();
+        return journal == null ? EventJournal.NO_POSITION : journal.append(type, value, payload);
+    }
+
+    private long appendToJournal(byte type, String value, ReadableMap payload) {
+        EventJournal journal = EventJournal.getInstance();
+        return journal == null ? EventJournal.NO_POSITION : journal.append(type, value, payload);
+    }
+
+    /**
+     * Must be called on the {@link ReportDispatcher} thread once the journaled report is handed to the SDK.
+     * A checkpoint acknowledges everything before the position too, so nothing is acknowledged while
+     * earlier reports wait in {@link PendingReportQueue} or among the recovered ones.
+     */
+    private void checkpointJournal(long position) {
+        EventJournal journal = EventJournal.getInstance();
+        if (journal != null && position != EventJournal.NO_POSITION && activation.isActive()
+                && pendingReports.isEmpty() && recoveredReports == null) {
+            journal.checkpoint(position);
+        }
+    }
+
+    /**
+     * Must be called on the {@link ReportDispatcher} thread.
+     *
+     * @return false if AppMetrica is not active yet and the report should be kept in {@link PendingReportQueue}
+     */
+    private boolean canReport() {
+        if (!activation.isActive()) {
+            return false;
+        }
+        replayWaitingReports();
+        flushScheduler.onReport();
+        return true;
+    }
+
+    private void replayWaitingReports() {
+        if (!pendingReports.isEmpty()) {
+            pendingReports.replay();
+        }
+        if (recoveredReports != null) {
+            replayRecoveredReports();
+        }
+    }
+
+    @ReactMethod
+    public void getPendingReportStats(Promise promise) {
+        long startTime = PluginStats.start();
+        try {
+            WritableMap stats = Arguments.createMap();
+            stats.putDouble("queued", pendingReports.getQueuedCount());
+            stats.putDouble("replayed", pendingReports.getReplayedCount());
+            stats.putDouble("dropped", pendingReports.getDroppedCount());
+            promise.resolve(stats);
+        } finally {
+            PluginStats.record(PluginStats.Timer.GET_PENDING_REPORT_STATS, startTime);
         }
     }
 
     @ReactMethod
-    public void activate(ReadableMap configMap) {
-        AppMetrica.activate(reactContext, Utils.toAppMetricaConfig(configMap));
-        enableActivityAutoTracking();
+    public void getPluginStats(Promise promise) {
+        long startTime = PluginStats.start();
+        try {
+            promise.resolve(Arguments.makeNativeMap(collectPluginStats()));
+        } finally {
+            PluginStats.record(PluginStats.Timer.GET_PLUGIN_STATS, startTime);
+        }
     }
 
-    private void enableActivityAutoTracking() {
-        Activity activity = getCurrentActivity();
-        if (activity != null) { // TODO: check
-            AppMetrica.enableActivityAutoTracking(activity.getApplication());
-        } else {
-            Log.w(TAG, "Activity is not attached");
+    private Map<String, Object> collectPluginStats() {
+        Map<String, Object> dispatcherStats = new HashMap<String, Object>();
+        dispatcherStats.put("pending", (double) dispatcher.getPendingCount());
+        dispatcherStats.put("dropped", (double) dispatcher.getDroppedCount());
+
+        Map<String, Object> pendingReportStats = new HashMap<String, Object>();
+        pendingReportStats.put("queued", (double) pendingReports.getQueuedCount());
+        pendingReportStats.put("replayed", (double) pendingReports.getReplayedCount());
+        pendingReportStats.put("dropped", (double) pendingReports.getDroppedCount());
+
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put("enabled", PluginStats.isEnabled());
+        stats.put("activationState", activation.getState().name());
+        stats.put("timers", PluginStats.snapshot());
+        stats.put("dispatcher", dispatcherStats);
+        stats.put("pendingReports", pendingReportStats);
+        stats.put("limitedEvents", (double) eventLimiter.getDroppedCount());
+        stats.put("suppressedErrors", (double) errorDeduplicator.getSuppressedCount());
+        stats.put("flushScheduler", flushScheduler.getStats());
+        stats.put("reporters", (double) reporterPool.size());
+        stats.put("spans", spans.getStats());
+        stats.put("metrics", metrics.getStats());
+        stats.put("suppressedLocations", (double) locationThrottle.getSuppressedCount());
+        stats.put("sessions", sessions.getStats());
+        stats.put("installReferrer", InstallReferrerCache.getInstance().getStats());
+        EventJournal journal = EventJournal.getInstance();
+        if (journal != null) {
+            stats.put("journal", journal.getStats());
         }
+        return stats;
     }
 
     @ReactMethod
     public void getLibraryApiLevel(Promise promise) {
-        promise.resolve(AppMetrica.getLibraryApiLevel());
+        long startTime = PluginStats.start();
+        try {
+            promise.resolve(AppMetrica.getLibraryApiLevel());
+        } finally {
+            PluginStats.record(PluginStats.Timer.GET_LIBRARY_API_LEVEL, startTime);
+        }
     }
 
     @ReactMethod
     public void getLibraryVersion(Promise promise) {
-        promise.resolve(AppMetrica.getLibraryVersion());
+        long startTime = PluginStats.start();
+        try {
+            promise.resolve(AppMetrica.getLibraryVersion());
+        } finally {
+            PluginStats.record(PluginStats.Timer.GET_LIBRARY_VERSION, startTime);
+        }
     }
 
     @ReactMethod
     public void pauseSession() {
-        AppMetrica.pauseSession(getCurrentActivity());
+        long startTime = PluginStats.start();
+        try {
+            if (sessions.isEnabled()) {
+                return;
+            }
+            final Activity activity = getCurrentActivity();
+            dispatcher.dispatchControl(new Runnable() {
+                @Override
+                public void run() {
+                    ReporterBackends.get().pauseSession(activity != null ? activity : sessions.getLastActivity());
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.PAUSE_SESSION, startTime);
+        }
     }
 
     @ReactMethod
-    public void reportAppOpen(String deeplink) {
-        AppMetrica.reportAppOpen(deeplink);
+    public void reportAppOpen(final String deeplink) {
+        long startTime = PluginStats.start();
+        try {
+            dispatcher.dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    if (canReport()) {
+                        ReporterBackends.get().reportAppOpen(deeplink);
+                    } else {
+                        pendingReports.offer(PendingReportQueue.TYPE_APP_OPEN, deeplink, null);
+                    }
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.REPORT_APP_OPEN, startTime);
+        }
     }
 
     @ReactMethod
-    public void reportError(String message) {
+    public void reportError(final String message, final String jsStack) {
+        long startTime = PluginStats.start();
         try {
-            Integer.valueOf("00xffWr0ng");
-        } catch (Throwable error) {
-            AppMetrica.reportError(message, error);
+            dispatcher.dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    reportJsError(message, jsStack, false);
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.REPORT_ERROR, startTime);
         }
     }
 
     @ReactMethod
-    public void reportEvent(String eventName, ReadableMap attributes) {
-        if (attributes == null) {
-            AppMetrica.reportEvent(eventName);
+    public void reportUnhandledException(final String message, final String jsStack) {
+        long startTime = PluginStats.start();
+        try {
+            dispatcher.dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    reportJsError(message, jsStack, true);
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.REPORT_UNHANDLED_EXCEPTION, startTime);
+        }
+    }
+
+    private void reportJsError(String message, String jsStack, boolean unhandled) {
+        if (!activation.isActive()) {
+            Log.w(TAG, "Error dropped, AppMetrica is not activated: " + message);
+            return;
+        }
+        JsError error = new JsError(message, jsStack);
+        String fingerprint = ErrorDeduplicator.fingerprint(message, error.getStackTrace());
+        int suppressed = errorDeduplicator.onError(fingerprint, message, System.currentTimeMillis());
+        if (suppressed == ErrorDeduplicator.NOT_REPORTED) {
+            return;
+        }
+        flushScheduler.onReport();
+        if (unhandled) {
+            ReporterBackends.get().reportUnhandledException(error);
         } else {
-            AppMetrica.reportEvent(eventName, attributes.toHashMap());
+            String text = suppressed > 0 ? message + " (repeated " + suppressed + " more times)" : message;
+            ReporterBackends.get().reportError(fingerprint, text, error);
         }
     }
 
     @ReactMethod
-    public void reportReferralUrl(String referralUrl) {
-        AppMetrica.reportReferralUrl(referralUrl);
+    public void reportEvent(final String eventName, final ReadableMap attributes) {
+        long startTime = PluginStats.start();
+        try {
+            if (!eventLimiter.tryAcquire(eventName)) {
+                return;
+            }
+            final long journalPosition = appendToJournal(EventJournal.TYPE_EVENT, eventName, attributes);
+            dispatcher.dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    reportEventInternal(eventName, attributes);
+                    checkpointJournal(journalPosition);
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.REPORT_EVENT, startTime);
+        }
+    }
+
+    private void reportEventInternal(String eventName, ReadableMap attributes) {
+        if (!canReport()) {
+            try {
+                String json = attributes == null ? null : Utils.toJson(attributes).toString();
+                pendingReports.offer(PendingReportQueue.TYPE_EVENT, eventName, json);
+            } catch (JSONException e) {
+                Log.w(TAG, "Event " + eventName + " dropped: " + e.getMessage());
+            }
+            return;
+        }
+        if (attributes == null) {
+            ReporterBackends.get().reportEvent(eventName);
+        } else {
+            long startTime = PluginStats.start();
+            Map<String, Object> attributesMap = attributes.toHashMap();
+            PluginStats.record(PluginStats.Timer.ATTRIBUTES_CONVERSION, startTime);
+            ReporterBackends.get().reportEvent(eventName, attributesMap);
+        }
     }
 
     @ReactMethod
-    public void requestAppMetricaDeviceID(Callback listener) {
+    public void reportEventJson(final String eventName, final String json) {
+        long startTime = PluginStats.start();
+        try {
+            if (!eventLimiter.tryAcquire(eventName)) {
+                return;
+            }
+            final long journalPosition = appendToJournal(EventJournal.TYPE_EVENT, eventName, json);
+            dispatcher.dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    reportEventJsonInternal(eventName, json, journalPosition);
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.REPORT_EVENT_JSON, startTime);
+        }
+    }
 
-        StartupParamsCallback startupParamsCallback = new StartupParamsCallback() {
-            @Override
-            public void onReceive(Result result) {
-                if (result != null) {
-                    String deviceId = result.deviceId;
-                    String deviceIdHash = result.deviceIdHash;
-                    String uuid = result.uuid;
-                    listener.invoke(deviceId, null);
+    private void reportEventJsonInternal(String eventName, String json, long journalPosition) {
+        if (json != null && jsonValidator.isEnabled()) {
+            String error = jsonValidator.validate(json);
+            if (error != null) {
+                Log.w(TAG, "Event " + eventName + " dropped: " + error);
+                checkpointJournal(journalPosition);
+                return;
+            }
+        }
+        if (!canReport()) {
+            pendingReports.offer(PendingReportQueue.TYPE_EVENT, eventName, json);
+        } else if (json == null) {
+            ReporterBackends.get().reportEvent(eventName);
+        } else {
+            ReporterBackends.get().reportEvent(eventName, json);
+        }
+        checkpointJournal(journalPosition);
+    }
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public double registerEventSchema(String eventName, ReadableArray keys, ReadableArray types) {
+        long startTime = PluginStats.start();
+        try {
+            return eventSchemas.register(eventName, keys, types);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Schema of event " + eventName + " rejected: " + e.getMessage());
+            return EventSchemaRegistry.INVALID_ID;
+        } finally {
+            PluginStats.record(PluginStats.Timer.REGISTER_EVENT_SCHEMA, startTime);
+        }
+    }
+
+    @ReactMethod
+    public void reportEventById(double schemaId, final ReadableArray values) {
+        long startTime = PluginStats.start();
+        try {
+            final EventSchemaRegistry.Schema schema = eventSchemas.get((int) schemaId);
+            if (schema == null) {
+                Log.w(TAG, "Event dropped: unknown schema " + (int) schemaId);
+                return;
+            }
+            if (values == null || !eventLimiter.tryAcquire(schema.eventName)) {
+                return;
+            }
+            dispatcher.dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    reportEventByIdInternal(schema, values);
                 }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.REPORT_EVENT_BY_ID, startTime);
+        }
+    }
+
+    private void reportEventByIdInternal(EventSchemaRegistry.Schema schema, ReadableArray values) {
+        long startTime = PluginStats.start();
+        Map<String, Object> attributes = schema.toAttributes(values);
+        PluginStats.record(PluginStats.Timer.ATTRIBUTES_CONVERSION, startTime);
+        if (attributes == null) {
+            Log.w(TAG, "Event " + schema.eventName + " dropped: values don't match the schema");
+        } else if (canReport()) {
+            ReporterBackends.get().reportEvent(schema.eventName, attributes);
+        } else {
+            pendingReports.offer(PendingReportQueue.TYPE_EVENT, schema.eventName, new JSONObject(attributes).toString());
+        }
+    }
+
+    @ReactMethod
+    public void reportEvents(final ReadableArray events) {
+        long startTime = PluginStats.start();
+        try {
+            if (events == null) {
+                return;
             }
+            EventJournal journal = EventJournal.getInstance();
+            final long journalPosition = journal == null ? EventJournal.NO_POSITION
+                    : journal.append(EventJournal.TYPE_EVENTS, null, events);
+            dispatcher.dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    reportEventsInternal(events, journalPosition);
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.REPORT_EVENTS, startTime);
+        }
+    }
 
-            @Override
-            public void onRequestError(Reason reason, Result result) {
-                listener.invoke(null, reason.toString());
+    private void reportEventsInternal(ReadableArray events, long journalPosition) {
+        for (int i = 0; i < events.size(); i++) {
+            if (events.getType(i) != ReadableType.Map) {
+                continue;
+            }
+            ReadableMap event = events.getMap(i);
+            if (!event.hasKey("name") || event.isNull("name")) {
+                continue;
+            }
+            ReadableMap attributes = null;
+            if (event.hasKey("attributes") && event.getType("attributes") == ReadableType.Map) {
+                attributes = event.getMap("attributes");
             }
-        };
-        AppMetrica.requestStartupParams(
-            reactApplicationContext.getApplicationContext(),
-            startupParamsCallback,
-            Arrays.asList(StartupParamsCallback.APPMETRICA_DEVICE_ID_HASH)
-        );
-        // AppMetrica.requestAppMetricaDeviceID(new ReactNativeAppMetricaDeviceIDListener(listener));
+            String eventName = event.getString("name");
+            if (eventLimiter.tryAcquire(eventName)) {
+                reportEventInternal(eventName, attributes);
+            }
+        }
+        checkpointJournal(journalPosition);
+    }
+
+    @ReactMethod
+    public void incrementCounter(final String name, final double delta, final ReadableMap dimensions) {
+        long startTime = PluginStats.start();
+        try {
+            dispatcher.dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    startMetricsTimer();
+                    metrics.incrementCounter(name, delta, dimensions);
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.INCREMENT_COUNTER, startTime);
+        }
+    }
+
+    @ReactMethod
+    public void recordValue(final String name, final double value) {
+        long startTime = PluginStats.start();
+        try {
+            dispatcher.dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    startMetricsTimer();
+                    metrics.recordValue(name, value);
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.RECORD_VALUE, startTime);
+        }
+    }
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public double startSpan(String name, ReadableMap attributes) {
+        long startTime = PluginStats.start();
+        try {
+            return spans.start(name, attributes == null ? null : attributes.toHashMap());
+        } finally {
+            PluginStats.record(PluginStats.Timer.START_SPAN, startTime);
+        }
+    }
+
+    @ReactMethod
+    public void endSpan(double spanId) {
+        long startTime = PluginStats.start();
+        try {
+            spans.end((int) spanId);
+        } finally {
+            PluginStats.record(PluginStats.Timer.END_SPAN, startTime);
+        }
+    }
+
+    private void startMetricsTimer() {
+        if (!metricsTimerStarted && metricsFlushIntervalMillis > 0) {
+            metricsTimerStarted = true;
+            metricsTimer = dispatcher.schedule(metricsTimerTask, metricsFlushIntervalMillis);
+        }
+    }
+
+    @ReactMethod
+    public void reportReferralUrl(final String referralUrl) {
+        long startTime = PluginStats.start();
+        try {
+            dispatcher.dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    if (canReport()) {
+                        ReporterBackends.get().reportReferralUrl(referralUrl);
+                    } else {
+                        pendingReports.offer(PendingReportQueue.TYPE_REFERRAL_URL, referralUrl, null);
+                    }
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.REPORT_REFERRAL_URL, startTime);
+        }
+    }
+
+    @ReactMethod
+    public void requestAppMetricaDeviceID(final Callback listener) {
+        long startTime = PluginStats.start();
+        try {
+            StartupParamsCache.getInstance().request(reactContext.getApplicationContext(), false, new StartupParamsCache.Listener() {
+                @Override
+                public void onResult(StartupParamsCache.StartupParams params, String error) {
+                    if (params != null) {
+                        listener.invoke(params.deviceId, null);
+                    } else {
+                        listener.invoke(null, error);
+                    }
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.REQUEST_APPMETRICA_DEVICE_ID, startTime);
+        }
+    }
+
+    @ReactMethod
+    public void getStartupParams(boolean refresh, final Promise promise) {
+        long startTime = PluginStats.start();
+        try {
+            StartupParamsCache.getInstance().request(reactContext.getApplicationContext(), refresh, new StartupParamsCache.Listener() {
+                @Override
+                public void onResult(StartupParamsCache.StartupParams params, String error) {
+                    if (params == null) {
+                        promise.reject(error, "Failed to request startup params: " + error);
+                        return;
+                    }
+                    WritableMap result = Arguments.createMap();
+                    result.putString("deviceId", params.deviceId);
+                    result.putString("deviceIdHash", params.deviceIdHash);
+                    result.putString("uuid", params.uuid);
+                    promise.resolve(result);
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.GET_STARTUP_PARAMS, startTime);
+        }
+    }
+
+    @ReactMethod
+    public void getInstallReferrer(final Promise promise) {
+        long startTime = PluginStats.start();
+        try {
+            InstallReferrerCache.getInstance().request(reactContext.getApplicationContext(), new InstallReferrerCache.Listener() {
+                @Override
+                public void onResult(InstallReferrerCache.InstallReferrer referrer, String error) {
+                    if (error != null) {
+                        promise.reject(error, "Failed to get install referrer: " + error);
+                        return;
+                    }
+                    if (referrer == null) {
+                        promise.resolve(null);
+                        return;
+                    }
+                    WritableMap result = Arguments.createMap();
+                    result.putString("referrer", referrer.referrer);
+                    result.putDouble("clickTimestamp", referrer.clickTimestampSeconds);
+                    result.putDouble("installBeginTimestamp", referrer.installBeginTimestampSeconds);
+                    promise.resolve(result);
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.GET_INSTALL_REFERRER, startTime);
+        }
     }
 
     @ReactMethod
     public void resumeSession() {
-        AppMetrica.resumeSession(getCurrentActivity());
+        long startTime = PluginStats.start();
+        try {
+            if (sessions.isEnabled()) {
+                return;
+            }
+            final Activity activity = getCurrentActivity();
+            dispatcher.dispatchControl(new Runnable() {
+                @Override
+                public void run() {
+                    ReporterBackends.get().resumeSession(activity != null ? activity : sessions.getLastActivity());
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.RESUME_SESSION, startTime);
+        }
     }
 
     @ReactMethod
     public void sendEventsBuffer() {
-        AppMetrica.sendEventsBuffer();
+        long startTime = PluginStats.start();
+        try {
+            dispatcher.dispatchControl(new Runnable() {
+                @Override
+                public void run() {
+                    flushScheduler.flushNow();
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.SEND_EVENTS_BUFFER, startTime);
+        }
     }
 
     @ReactMethod
-    public void setLocation(ReadableMap locationMap) {
-        AppMetrica.setLocation(Utils.toLocation(locationMap));
+    public void setLocation(final ReadableMap locationMap) {
+        long startTime = PluginStats.start();
+        try {
+            dispatcher.dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    if (locationMap == null) {
+                        locationThrottle.reset();
+                        ReporterBackends.get().setLocation(null);
+                        return;
+                    }
+                    Location location = locationThrottle.offer(locationMap, SystemClock.elapsedRealtime());
+                    if (location != null) {
+                        ReporterBackends.get().setLocation(location);
+                    }
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.SET_LOCATION, startTime);
+        }
     }
 
     @ReactMethod
     public void setLocationTracking(boolean enabled) {
-        AppMetrica.setLocationTracking(enabled);
+        long startTime = PluginStats.start();
+        try {
+            ReporterBackends.get().setLocationTracking(enabled);
+        } finally {
+            PluginStats.record(PluginStats.Timer.SET_LOCATION_TRACKING, startTime);
+        }
     }
 
     @ReactMethod
     public void setStatisticsSending(boolean enabled) {
-        AppMetrica.setDataSendingEnabled(enabled);
+        long startTime = PluginStats.start();
+        try {
+            ReporterBackends.get().setDataSendingEnabled(enabled);
+        } finally {
+            PluginStats.record(PluginStats.Timer.SET_STATISTICS_SENDING, startTime);
+        }
     }
 
     @ReactMethod
-    public void setUserProfileID(String userProfileID) {
-        AppMetrica.setUserProfileID(userProfileID);
+    public void activateReporter(final String apiKey, final ReadableMap configMap) {
+        long startTime = PluginStats.start();
+        try {
+            if (apiKey == null) {
+                return;
+            }
+            dispatcher.dispatchControl(new Runnable() {
+                @Override
+                public void run() {
+                    reporterPool.activate(apiKey, Utils.toReporterConfig(apiKey, configMap));
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.ACTIVATE_REPORTER, startTime);
+        }
     }
-    
+
     @ReactMethod
-    public void reportUserProfile(String userProfileID, ReadableMap userProfileParam, Promise promise) {
-        if(userProfileID == null) {
-            promise.reject("-101", "UserProfileId can't be null");
+    public void reportReporterEvent(final String apiKey, final String eventName, final ReadableMap attributes) {
+        long startTime = PluginStats.start();
+        try {
+            if (apiKey == null) {
+                return;
+            }
+            dispatcher.dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    reportReporterEventInternal(reporterPool.get(apiKey), eventName, attributes);
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.REPORT_REPORTER_EVENT, startTime);
         }
+    }
 
-        setUserProfileID(userProfileID);
-
-        if(userProfileParam != null) {
-            UserProfile.Builder userProfileBuilder = UserProfile.newBuilder();
-            ReadableMapKeySetIterator iterator = userProfileParam.keySetIterator();
+    @ReactMethod
+    public void reportReporterEvents(final String apiKey, final ReadableArray events) {
+        long startTime = PluginStats.start();
+        try {
+            if (apiKey == null || events == null) {
+                return;
+            }
+            dispatcher.dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    IReporter reporter = reporterPool.get(apiKey);
+                    for (int i = 0; i < events.size(); i++) {
+                        if (events.getType(i) != ReadableType.Map) {
+                            continue;
+                        }
+                        ReadableMap event = events.getMap(i);
+                        if (!event.hasKey("name") || event.isNull("name")) {
+                            continue;
+                        }
+                        ReadableMap attributes = null;
+                        if (event.hasKey("attributes") && event.getType("attributes") == ReadableType.Map) {
+                            attributes = event.getMap("attributes");
+                        }
+                        reportReporterEventInternal(reporter, event.getString("name"), attributes);
+                    }
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.REPORT_REPORTER_EVENTS, startTime);
+        }
+    }
 
-            while (iterator.hasNextKey()) {
-                String key = iterator.nextKey();
+    private void reportReporterEventInternal(IReporter reporter, String eventName, ReadableMap attributes) {
+        if (attributes == null) {
+            reporter.reportEvent(eventName);
+        } else {
+            long startTime = PluginStats.start();
+            Map<String, Object> attributesMap = attributes.toHashMap();
+            PluginStats.record(PluginStats.Timer.ATTRIBUTES_CONVERSION, startTime);
+            reporter.reportEvent(eventName, attributesMap);
+        }
+    }
 
-                switch (key) {
-                    case "name": {
-                        UserProfileUpdate name = Attribute.name().withValue(userProfileParam.getString(key));
-                        userProfileBuilder.apply(name);
-                        break;
-                    }
-                    case "gender": {
-                        String genderProp = userProfileParam.getString(key);
-
-                        if(genderProp.equalsIgnoreCase("male")) {
-                            UserProfileUpdate gender = Attribute.gender().withValue(GenderAttribute.Gender.MALE);
-                            userProfileBuilder.apply(gender);
-                        } else if(genderProp.equalsIgnoreCase("female")) {
-                            UserProfileUpdate gender = Attribute.gender().withValue(GenderAttribute.Gender.FEMALE);
-                            userProfileBuilder.apply(gender);
-                        } else {
-                            UserProfileUpdate gender = Attribute.gender().withValue(GenderAttribute.Gender.OTHER);
-                            userProfileBuilder.apply(gender);
-                        }
+    @ReactMethod
+    public void pauseReporterSession(final String apiKey) {
+        long startTime = PluginStats.start();
+        try {
+            if (apiKey == null) {
+                return;
+            }
+            dispatcher.dispatchControl(new Runnable() {
+                @Override
+                public void run() {
+                    reporterPool.get(apiKey).pauseSession();
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.PAUSE_REPORTER_SESSION, startTime);
+        }
+    }
 
-                        break;
-                    }
-                    case "birthDate": {
-                        UserProfileUpdate birthDate = Attribute.birthDate().withAge(userProfileParam.getInt(key));
-                        userProfileBuilder.apply(birthDate);
-                        break;
-                    }
-                    case "notificationsEnabled": {
-                        UserProfileUpdate notificationsEnabled = Attribute.notificationsEnabled().withValue(userProfileParam.getBoolean(key));
-                        userProfileBuilder.apply(notificationsEnabled);
-                        break;
-                    }
-                    default: {
-                        ReadableType keyType = userProfileParam.getType(key);
-                        UserProfileUpdate customAttribute = null;
-
-                        if(keyType == ReadableType.String) {
-                            customAttribute = Attribute.customString(key).withValue(userProfileParam.getString(key));
-                        } else if(keyType == ReadableType.Number) {
-                            customAttribute = Attribute.customNumber(key).withValue(userProfileParam.getInt(key));
-                        } else if(keyType == ReadableType.Boolean) {
-                            customAttribute = Attribute.customBoolean(key).withValue(userProfileParam.getBoolean(key));
-                        }
+    @ReactMethod
+    public void resumeReporterSession(final String apiKey) {
+        long startTime = PluginStats.start();
+        try {
+            if (apiKey == null) {
+                return;
+            }
+            dispatcher.dispatchControl(new Runnable() {
+                @Override
+                public void run() {
+                    reporterPool.get(apiKey).resumeSession();
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.RESUME_REPORTER_SESSION, startTime);
+        }
+    }
 
-                        if(customAttribute != null) {
-                            userProfileBuilder.apply(customAttribute);
-                        }
+    @ReactMethod
+    public void sendReporterEventsBuffer(final String apiKey) {
+        long startTime = PluginStats.start();
+        try {
+            if (apiKey == null) {
+                return;
+            }
+            dispatcher.dispatchControl(new Runnable() {
+                @Override
+                public void run() {
+                    reporterPool.get(apiKey).sendEventsBuffer();
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.SEND_REPORTER_EVENTS_BUFFER, startTime);
+        }
+    }
 
-                        break;
+    @ReactMethod
+    public void setUserProfileID(final String userProfileID) {
+        long startTime = PluginStats.start();
+        try {
+            dispatcher.dispatchControl(new Runnable() {
+                @Override
+                public void run() {
+                    if (canReport()) {
+                        ReporterBackends.get().setUserProfileID(userProfileID);
+                        profileDiffer.setCurrentProfile(userProfileID);
+                    } else {
+                        pendingReports.offer(PendingReportQueue.TYPE_USER_PROFILE_ID, userProfileID, null);
                     }
                 }
-            }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.SET_USER_PROFILE_ID, startTime);
+        }
+    }
+    
+    @ReactMethod
+    public void reportUserProfile(final String userProfileID, final ReadableMap userProfileParam, final Promise promise) {
+        long startTime = PluginStats.start();
+        try {
+            final long journalPosition = appendToJournal(EventJournal.TYPE_USER_PROFILE, userProfileID, userProfileParam);
+            dispatcher.dispatchControl(new Runnable() {
+                @Override
+                public void run() {
+                    reportUserProfileInternal(userProfileID, userProfileParam, promise, journalPosition);
+                }
+            });
+        } finally {
+            PluginStats.record(PluginStats.Timer.REPORT_USER_PROFILE, startTime);
+        }
+    }
 
-            UserProfile userProfile = userProfileBuilder.build();
+    /**
+     * Sends only the attributes that changed since the last report AppMetrica accepted.
+     * Before activation the profile is queued whole and the differ is left untouched.
+     *
+     * @param promise null for reports recovered from {@link EventJournal}
+     */
+    private void reportUserProfileInternal(String userProfileID, ReadableMap userProfileParam, Promise promise,
+                                           long journalPosition) {
+        if(userProfileID == null) {
+            if (promise != null) {
+                promise.reject("-101", "UserProfileId can't be null");
+            }
+            return;
+        }
 
-            if(userProfile.getUserProfileUpdates().size() > 0) {
-                AppMetrica.reportUserProfile(userProfile);
+        long startTime = PluginStats.start();
+        Map<String, Object> values = userProfileParam == null ? null : UserProfileDiffer.toValues(userProfileParam);
+        boolean hasValues = values != null && !values.isEmpty();
 
-                promise.resolve(true);
+        if (!canReport()) {
+            if (hasValues) {
+                pendingReports.offer(PendingReportQueue.TYPE_USER_PROFILE, userProfileID, new JSONObject(values).toString());
             } else {
-                promise.reject("-102", "Valid keys not found");
+                pendingReports.offer(PendingReportQueue.TYPE_USER_PROFILE_ID, userProfileID, null);
+            }
+        } else {
+            if(!profileDiffer.isCurrentProfile(userProfileID)) {
+                ReporterBackends.get().setUserProfileID(userProfileID);
+                profileDiffer.setCurrentProfile(userProfileID);
+            }
+            if (hasValues) {
+                Map<String, Object> changed = profileDiffer.diff(userProfileID, values);
+                if(!changed.isEmpty()) {
+                    UserProfile userProfile = UserProfileDiffer.toUserProfile(changed);
+                    PluginStats.record(PluginStats.Timer.PROFILE_BUILDING, startTime);
+                    ReporterBackends.get().reportUserProfile(userProfile);
+                    profileDiffer.commit(userProfileID, changed);
+                }
             }
         }
+        checkpointJournal(journalPosition);
+
+        if (promise == null) {
+            return;
+        }
+        if (values != null && values.isEmpty()) {
+            promise.reject("-102", "Valid keys not found");
+        } else {
+            promise.resolve(true);
+        }
     }
 }
@@ -8,24 +8,45 @@
 
 package io.appmetrica.analytics.plugin.reactnative;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
-import com.facebook.react.ReactPackage;
+import com.facebook.react.TurboReactPackage;
 import com.facebook.react.bridge.NativeModule;
 import com.facebook.react.bridge.ReactApplicationContext;
-import com.facebook.react.uimanager.ViewManager;
-import com.facebook.react.bridge.JavaScriptModule;
+import com.facebook.react.module.model.ReactModuleInfo;
+import com.facebook.react.module.model.ReactModuleInfoProvider;
 
-public class AppMetricaPackage implements ReactPackage {
+/**
+ * Creates {@link AppMetricaModule} lazily, on the first call from JS.
+ * With the New Architecture enabled the module is exposed as a TurboModule.
+ */
+public class AppMetricaPackage extends TurboReactPackage {
     @Override
-    public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
-        return Arrays.<NativeModule>asList(new AppMetricaModule(reactContext));
+    public NativeModule getModule(String name, ReactApplicationContext reactContext) {
+        if (AppMetricaModule.NAME.equals(name)) {
+            return new AppMetricaModule(reactContext);
+        }
+        return null;
     }
 
     @Override
-    public List<ViewManager> createViewManagers(ReactApplicationContext reactContext) {
-        return Collections.emptyList();
+    public ReactModuleInfoProvider getReactModuleInfoProvider() {
+        return new ReactModuleInfoProvider() {
+            @Override
+            public Map<String, ReactModuleInfo> getReactModuleInfos() {
+                Map<String, ReactModuleInfo> moduleInfos = new HashMap<>();
+                moduleInfos.put(AppMetricaModule.NAME, new ReactModuleInfo(
+                    AppMetricaModule.NAME,
+                    AppMetricaModule.class.getName(),
+                    false, // canOverrideExistingModule
+                    false, // needsEagerInit
+                    false, // hasConstants
+                    false, // isCxxModule
+                    BuildConfig.IS_NEW_ARCHITECTURE_ENABLED // isTurboModule
+                ));
+                return moduleInfos;
+            }
+        };
     }
 }
@@ -0,0 +1,143 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.Intent;
+import android.location.Location;
+
+import io.appmetrica.analytics.AppMetrica;
+import io.appmetrica.analytics.AppMetricaConfig;
+import io.appmetrica.analytics.IReporter;
+import io.appmetrica.analytics.ReporterConfig;
+import io.appmetrica.analytics.StartupParamsCallback;
+import io.appmetrica.analytics.profile.UserProfile;
+
+import java.util.List;
+import java.util.Map;
+
+final class AppMetricaReporterBackend implements ReporterBackend {
+
+    @Override
+    public void activate(Context context, AppMetricaConfig config) {
+        AppMetrica.activate(context, config);
+    }
+
+    @Override
+    public void enableActivityAutoTracking(Application application) {
+        AppMetrica.enableActivityAutoTracking(application);
+    }
+
+    @Override
+    public void reportEvent(String eventName) {
+        AppMetrica.reportEvent(eventName);
+    }
+
+    @Override
+    public void reportEvent(String eventName, Map<String, Object> attributes) {
+        AppMetrica.reportEvent(eventName, attributes);
+    }
+
+    @Override
+    public void reportEvent(String eventName, String json) {
+        AppMetrica.reportEvent(eventName, json);
+    }
+
+    @Override
+    public void reportError(String message, Throwable error) {
+        AppMetrica.reportError(message, error);
+    }
+
+    @Override
+    public void reportError(String groupIdentifier, String message, Throwable error) {
+        AppMetrica.reportError(groupIdentifier, message, error);
+    }
+
+    @Override
+    public void reportUnhandledException(Throwable exception) {
+        AppMetrica.reportUnhandledException(exception);
+    }
+
+    @Override
+    public void reportUserProfile(UserProfile userProfile) {
+        AppMetrica.reportUserProfile(userProfile);
+    }
+
+    @Override
+    public void setUserProfileID(String userProfileID) {
+        AppMetrica.setUserProfileID(userProfileID);
+    }
+
+    @Override
+    public void reportAppOpen(String deeplink) {
+        AppMetrica.reportAppOpen(deeplink);
+    }
+
+    @Override
+    public void reportAppOpen(Activity activity) {
+        AppMetrica.reportAppOpen(activity);
+    }
+
+    @Override
+    public void reportAppOpen(Intent intent) {
+        AppMetrica.reportAppOpen(intent);
+    }
+
+    @Override
+    public void reportReferralUrl(String referralUrl) {
+        AppMetrica.reportReferralUrl(referralUrl);
+    }
+
+    @Override
+    public void pauseSession(Activity activity) {
+        AppMetrica.pauseSession(activity);
+    }
+
+    @Override
+    public void resumeSession(Activity activity) {
+        AppMetrica.resumeSession(activity);
+    }
+
+    @Override
+    public void setLocation(Location location) {
+        AppMetrica.setLocation(location);
+    }
+
+    @Override
+    public void setLocationTracking(boolean enabled) {
+        AppMetrica.setLocationTracking(enabled);
+    }
+
+    @Override
+    public void setDataSendingEnabled(boolean enabled) {
+        AppMetrica.setDataSendingEnabled(enabled);
+    }
+
+    @Override
+    public void requestStartupParams(Context context, StartupParamsCallback callback, List<String> params) {
+        AppMetrica.requestStartupParams(context, callback, params);
+    }
+
+    @Override
+    public void sendEventsBuffer() {
+        AppMetrica.sendEventsBuffer();
+    }
+
+    @Override
+    public void activateReporter(Context context, ReporterConfig config) {
+        AppMetrica.activateReporter(context, config);
+    }
+
+    @Override
+    public IReporter getReporter(Context context, String apiKey) {
+        return AppMetrica.getReporter(context, apiKey);
+    }
+}
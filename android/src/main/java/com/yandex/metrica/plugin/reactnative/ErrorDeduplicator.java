@@ -0,0 +1,203 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Suppresses repeats of the same JS error within a time window, so an error thrown on every
+ * render doesn't flood AppMetrica. Errors are told apart by a fingerprint of the message and
+ * the top stack frames. Repeats that are not followed by another report of the error are counted
+ * in a summary event once their window ends, or on {@link #flush()}.
+ * Not thread safe, used on the {@link ReportDispatcher} thread only.
+ */
+final class ErrorDeduplicator {
+
+    static final String SUMMARY_EVENT_NAME = "appmetrica_plugin_suppressed_errors";
+    static final int NOT_REPORTED = -1;
+
+    private static final int MAX_ENTRIES = 64;
+    private static final int FINGERPRINT_FRAMES = 5;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final class Entry {
+        long windowStartMillis;
+        int suppressedCount;
+        String lastMessage;
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private final ReportDispatcher dispatcher;
+    private final Runnable summaryTask = new Runnable() {
+        @Override
+        public void run() {
+            summaryScheduled = false;
+            reportSuppressed(false, System.currentTimeMillis());
+        }
+    };
+    private boolean summaryScheduled = false;
+    private long windowMillis = 60000L;
+    private volatile long suppressedTotal = 0;
+
+    ErrorDeduplicator(ReportDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    void setWindowMillis(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    long getSuppressedCount() {
+        return suppressedTotal;
+    }
+
+    /**
+     * @return {@link #NOT_REPORTED} if the error is a repeat within the window and should be dropped,
+     * otherwise how many repeats were suppressed since it was last reported
+     */
+    int onError(String fingerprint, String message, long nowMillis) {
+        if (windowMillis <= 0) {
+            return 0;
+        }
+        Entry entry = entries.get(fingerprint);
+        if (entry != null && nowMillis - entry.windowStartMillis < windowMillis) {
+            entry.suppressedCount++;
+            entry.lastMessage = message;
+            suppressedTotal++;
+            scheduleSummary(entry.windowStartMillis + windowMillis - nowMillis);
+            return NOT_REPORTED;
+        }
+        int suppressed = 0;
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(fingerprint, entry);
+            trim();
+        } else {
+            suppressed = entry.suppressedCount;
+        }
+        entry.windowStartMillis = nowMillis;
+        entry.suppressedCount = 0;
+        entry.lastMessage = null;
+        return suppressed;
+    }
+
+    /**
+     * Reports all suppressed repeats right away, for example when the app goes to background.
+     */
+    void flush() {
+        reportSuppressed(true, System.currentTimeMillis());
+    }
+
+    private void scheduleSummary(long delayMillis) {
+        if (!summaryScheduled) {
+            summaryScheduled = true;
+            dispatcher.schedule(summaryTask, Math.max(0, delayMillis));
+        }
+    }
+
+    /**
+     * Reports the repeats of errors whose window has ended, or of all errors, keyed by fingerprint.
+     */
+    private void reportSuppressed(boolean all, long nowMillis) {
+        Map<String, Object> summary = new HashMap<String, Object>();
+        long nextDelayMillis = Long.MAX_VALUE;
+        for (Map.Entry<String, Entry> item : entries.entrySet()) {
+            Entry entry = item.getValue();
+            if (entry.suppressedCount == 0) {
+                continue;
+            }
+            long remainingMillis = entry.windowStartMillis + windowMillis - nowMillis;
+            if (!all && remainingMillis > 0) {
+                nextDelayMillis = Math.min(nextDelayMillis, remainingMillis);
+                continue;
+            }
+            summary.put(item.getKey(), toSummary(entry));
+            entry.suppressedCount = 0;
+            entry.lastMessage = null;
+        }
+        if (nextDelayMillis != Long.MAX_VALUE) {
+            scheduleSummary(nextDelayMillis);
+        }
+        if (!summary.isEmpty()) {
+            ReporterBackends.get().reportEvent(SUMMARY_EVENT_NAME, summary);
+        }
+    }
+
+    private void trim() {
+        Map<String, Object> summary = new HashMap<String, Object>();
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > MAX_ENTRIES && iterator.hasNext()) {
+            Map.Entry<String, Entry> item = iterator.next();
+            if (item.getValue().suppressedCount > 0) {
+                summary.put(item.getKey(), toSummary(item.getValue()));
+            }
+            iterator.remove();
+        }
+        if (!summary.isEmpty()) {
+            ReporterBackends.get().reportEvent(SUMMARY_EVENT_NAME, summary);
+        }
+    }
+
+    private static Map<String, Object> toSummary(Entry entry) {
+        Map<String, Object> error = new HashMap<String, Object>();
+        error.put("message", entry.lastMessage);
+        error.put("count", entry.suppressedCount);
+        return error;
+    }
+
+    /**
+     * FNV-1a hash of the message with digits collapsed, so "Item 12 failed" and "Item 13 failed"
+     * match, and of the first stack frames.
+     */
+    static String fingerprint(String message, StackTraceElement[] frames) {
+        long hash = FNV_OFFSET_BASIS;
+        if (message != null) {
+            boolean inNumber = false;
+            for (int i = 0; i < message.length(); i++) {
+                char c = message.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    if (inNumber) {
+                        continue;
+                    }
+                    inNumber = true;
+                    c = '#';
+                } else {
+                    inNumber = false;
+                }
+                hash = hash(hash, c);
+            }
+        }
+        int count = Math.min(frames.length, FINGERPRINT_FRAMES);
+        for (int i = 0; i < count; i++) {
+            hash = hash(hash, '\n');
+            hash = hash(hash, frames[i].getMethodName());
+            hash = hash(hash, frames[i].getFileName());
+            hash = (hash ^ frames[i].getLineNumber()) * FNV_PRIME;
+        }
+        return Long.toHexString(hash);
+    }
+
+    private static long hash(long hash, char c) {
+        return (hash ^ c) * FNV_PRIME;
+    }
+
+    private static long hash(long hash, String value) {
+        if (value == null) {
+            return hash;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
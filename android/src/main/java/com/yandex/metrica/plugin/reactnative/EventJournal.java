@@ -0,0 +1,511 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only journal of reports that JS handed to the plugin but the SDK has not received yet,
+ * so they survive the process being killed. The journal is a ring of length-prefixed records in
+ * a memory-mapped file: the OS writes the pages back even if the process dies, so there is no
+ * fsync per record. Strings are encoded straight into the mapping, and so are attribute maps and
+ * arrays, as JSON, so the caller doesn't build a JSON tree or string for the journal.
+ *
+ * <p>Positions are logical byte offsets that only grow. The header keeps the checkpoint (the end
+ * of the last report handed to the SDK) and the tail. The tail is written after the record,
+ * so a record torn by a kill is never read back. When the ring is full the oldest records are
+ * dropped, and the checkpoint is moved past them before their bytes are overwritten.
+ */
+final class EventJournal {
+
+    static final long NO_POSITION = -1;
+
+    static final byte TYPE_EVENT = 1;
+    static final byte TYPE_EVENTS = 2;
+    static final byte TYPE_USER_PROFILE = 3;
+
+    static final class Record {
+        final byte type;
+        final String value;
+        final String payload;
+        // Where the record ends in this process' journal, to pass to checkpoint
+        final long position;
+
+        Record(byte type, String value, String payload, long position) {
+            this.type = type;
+            this.value = value;
+            this.payload = payload;
+            this.position = position;
+        }
+    }
+
+    private static final String TAG = "AppMetricaJournal";
+    private static final String FILE_NAME = "appmetrica_plugin_journal";
+    private static final int MAGIC = 0x414d524a;
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int CHECKPOINT_OFFSET = 16;
+    private static final int TAIL_OFFSET = 24;
+    private static final int MIN_CAPACITY = 4096;
+    // length, type, two string lengths
+    private static final int RECORD_OVERHEAD = 4 + 1 + 4 + 4;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    // Doubles below it hold whole numbers exactly
+    private static final double MAX_EXACT_WHOLE = 9007199254740992.0;
+
+    private static volatile EventJournal instance;
+
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private long checkpoint;
+    private long tail;
+    private List<Record> recovered;
+    // Set while a JSON payload is only measured, nothing is written then
+    private boolean measuring = false;
+
+    private long appendedCount = 0;
+    private long appendedBytes = 0;
+    private long appendNanos = 0;
+    private long droppedCount = 0;
+    private final int recoveredCount;
+
+    /**
+     * Writes the recovered records first, so they stay journaled until they are reported and come
+     * before anything appended by this process.
+     */
+    private EventJournal(MappedByteBuffer buffer, int capacity, List<Record> previous) {
+        this.buffer = buffer;
+        this.capacity = capacity;
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putLong(CHECKPOINT_OFFSET, 0);
+        buffer.putLong(TAIL_OFFSET, 0);
+        recovered = new ArrayList<Record>(previous.size());
+        for (Record record : previous) {
+            long position = append(record.type, record.value, record.payload);
+            recovered.add(new Record(record.type, record.value, record.payload, position));
+        }
+        recoveredCount = recovered.size();
+    }
+
+    static EventJournal getInstance() {
+        return instance;
+    }
+
+    /**
+     * Opens the journal once per process, reading back the records left unacknowledged by the
+     * previous one. Must not be called on the main thread.
+     *
+     * @return null if the journal file can't be used
+     */
+    static synchronized EventJournal open(Context context, int maxSize) {
+        if (instance == null) {
+            instance = open(new File(context.getApplicationContext().getFilesDir(), FILE_NAME), maxSize);
+        }
+        return instance;
+    }
+
+    /**
+     * Opens a journal file of its own, without the per-process instance.
+     *
+     * @return null if the file can't be used
+     */
+    static EventJournal open(File file, int maxSize) {
+        int capacity = Math.max(maxSize, MIN_CAPACITY) - HEADER_SIZE;
+        try {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                List<Record> recovered = new ArrayList<Record>();
+                if (randomAccessFile.length() > HEADER_SIZE) {
+                    MappedByteBuffer old = randomAccessFile.getChannel()
+                            .map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+                    readRecords(old, recovered);
+                }
+                randomAccessFile.setLength(HEADER_SIZE + capacity);
+                MappedByteBuffer buffer = randomAccessFile.getChannel()
+                        .map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+                return new EventJournal(buffer, capacity, recovered);
+            } finally {
+                // The mapping stays valid after the file is closed
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to open the event journal", e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the records between the checkpoint and the tail, up to the first one that doesn't
+     * fit in its own length, as a corrupted file must not fail every following start.
+     */
+    private static void readRecords(MappedByteBuffer old, List<Record> records) {
+        if (old.getInt(0) != MAGIC || old.getInt(4) != VERSION) {
+            return;
+        }
+        int capacity = old.getInt(CAPACITY_OFFSET);
+        long position = old.getLong(CHECKPOINT_OFFSET);
+        long end = old.getLong(TAIL_OFFSET);
+        if (capacity <= 0 || HEADER_SIZE + (long) capacity > old.capacity() || position < 0
+                || end < position || end - position > capacity) {
+            return;
+        }
+        while (position < end) {
+            int length = getInt(old, capacity, position);
+            long recordEnd = position + 4 + length;
+            if (length < RECORD_OVERHEAD - 4 || recordEnd > end) {
+                return;
+            }
+            byte type = getByte(old, capacity, position + 4);
+            long valuePosition = position + 5;
+            int valueLength = getInt(old, capacity, valuePosition);
+            long payloadPosition = valuePosition + 4 + Math.max(valueLength, 0);
+            if (valueLength < -1 || payloadPosition + 4 > recordEnd) {
+                return;
+            }
+            int payloadLength = getInt(old, capacity, payloadPosition);
+            if (payloadLength < -1 || payloadPosition + 4 + Math.max(payloadLength, 0) > recordEnd) {
+                return;
+            }
+            String value = getString(old, capacity, valuePosition + 4, valueLength);
+            String payload = getString(old, capacity, payloadPosition + 4, payloadLength);
+            records.add(new Record(type, value, payload, NO_POSITION));
+            position = recordEnd;
+        }
+    }
+
+    /**
+     * @return records the previous process didn't hand to the SDK, only once. They are already
+     * appended to this journal, checkpoint {@link Record#position} once each is reported.
+     */
+    synchronized List<Record> takeRecovered() {
+        List<Record> records = recovered;
+        recovered = null;
+        return records == null ? new ArrayList<Record>() : records;
+    }
+
+    /**
+     * @return position to pass to {@link #checkpoint(long)} once the report reaches the SDK,
+     * or {@link #NO_POSITION} if the record is larger than the journal
+     */
+    synchronized long append(byte type, String value, String payload) {
+        return append(type, value, payload, null);
+    }
+
+    /**
+     * Same as {@link #append(byte, String, String)} with the payload written as JSON.
+     */
+    synchronized long append(byte type, String value, ReadableMap payload) {
+        return append(type, value, null, payload);
+    }
+
+    /**
+     * Same as {@link #append(byte, String, String)} with the payload written as JSON.
+     */
+    synchronized long append(byte type, String value, ReadableArray payload) {
+        return append(type, value, null, payload);
+    }
+
+    private long append(byte type, String value, String payload, Object jsonPayload) {
+        long startTime = System.nanoTime();
+        long payloadLength = jsonPayload == null ? utf8Length(payload) : measureJson(jsonPayload);
+        long size = RECORD_OVERHEAD + utf8Length(value) + payloadLength;
+        if (size > capacity) {
+            return NO_POSITION;
+        }
+        if (tail + size - checkpoint > capacity) {
+            while (tail + size - checkpoint > capacity) {
+                checkpoint += 4 + getInt(buffer, capacity, checkpoint);
+                droppedCount++;
+            }
+            // Before the dropped records are overwritten, so a kill mid-write doesn't expose them
+            buffer.putLong(CHECKPOINT_OFFSET, checkpoint);
+        }
+        long position = tail;
+        putInt(position, (int) size - 4);
+        putByte(position + 4, type);
+        position = putString(position + 5, value);
+        if (jsonPayload == null) {
+            position = putString(position, payload);
+        } else {
+            putInt(position, (int) payloadLength);
+            position = putJson(position + 4, jsonPayload);
+        }
+        tail = position;
+        buffer.putLong(TAIL_OFFSET, tail);
+        appendedCount++;
+        appendedBytes += size;
+        appendNanos += System.nanoTime() - startTime;
+        return tail;
+    }
+
+    /**
+     * Marks everything up to the position as handed to the SDK.
+     */
+    synchronized void checkpoint(long position) {
+        if (position > checkpoint && position <= tail) {
+            checkpoint = position;
+            buffer.putLong(CHECKPOINT_OFFSET, checkpoint);
+        }
+    }
+
+    synchronized long getTail() {
+        return tail;
+    }
+
+    synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put("appended", (double) appendedCount);
+        stats.put("appendedBytes", (double) appendedBytes);
+        stats.put("bytesPerSecond", appendNanos == 0 ? 0.0 : appendedBytes * 1e9 / appendNanos);
+        stats.put("unacknowledgedBytes", (double) (tail - checkpoint));
+        stats.put("dropped", (double) droppedCount);
+        stats.put("recovered", (double) recoveredCount);
+        return stats;
+    }
+
+    private long putString(long position, String value) {
+        if (value == null) {
+            putInt(position, -1);
+            return position + 4;
+        }
+        long lengthPosition = position;
+        position += 4;
+        for (int i = 0; i < value.length(); i++) {
+            int c = value.charAt(i);
+            if (Character.isHighSurrogate((char) c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, value.charAt(++i));
+            }
+            position = putCodePoint(position, c);
+        }
+        putInt(lengthPosition, (int) (position - lengthPosition - 4));
+        return position;
+    }
+
+    private long putCodePoint(long position, int c) {
+        if (c < 0x80) {
+            return emit(position, c);
+        } else if (c < 0x800) {
+            position = emit(position, 0xc0 | c >> 6);
+            return emit(position, 0x80 | c & 0x3f);
+        } else if (c < 0x10000) {
+            position = emit(position, 0xe0 | c >> 12);
+            position = emit(position, 0x80 | c >> 6 & 0x3f);
+            return emit(position, 0x80 | c & 0x3f);
+        }
+        position = emit(position, 0xf0 | c >> 18);
+        position = emit(position, 0x80 | c >> 12 & 0x3f);
+        position = emit(position, 0x80 | c >> 6 & 0x3f);
+        return emit(position, 0x80 | c & 0x3f);
+    }
+
+    private static int utf8Length(String value) {
+        return value == null ? 0 : Utils.utf8Length(value);
+    }
+
+    /**
+     * @return UTF-8 length of the JSON of a {@link ReadableMap} or {@link ReadableArray}
+     */
+    private long measureJson(Object value) {
+        measuring = true;
+        try {
+            return putJson(0, value);
+        } finally {
+            measuring = false;
+        }
+    }
+
+    private long putJson(long position, Object value) {
+        if (value instanceof ReadableMap) {
+            ReadableMap map = (ReadableMap) value;
+            position = emit(position, '{');
+            ReadableMapKeySetIterator iterator = map.keySetIterator();
+            boolean first = true;
+            while (iterator.hasNextKey()) {
+                String key = iterator.nextKey();
+                if (!first) {
+                    position = emit(position, ',');
+                }
+                first = false;
+                position = putJsonString(position, key);
+                position = emit(position, ':');
+                switch (map.getType(key)) {
+                    case Boolean:
+                        position = putAscii(position, map.getBoolean(key) ? "true" : "false");
+                        break;
+                    case Number:
+                        position = putJsonNumber(position, map.getDouble(key));
+                        break;
+                    case String:
+                        position = putJsonString(position, map.getString(key));
+                        break;
+                    case Map:
+                        position = putJson(position, map.getMap(key));
+                        break;
+                    case Array:
+                        position = putJson(position, map.getArray(key));
+                        break;
+                    default:
+                        position = putAscii(position, "null");
+                        break;
+                }
+            }
+            return emit(position, '}');
+        }
+        ReadableArray array = (ReadableArray) value;
+        position = emit(position, '[');
+        for (int i = 0; i < array.size(); i++) {
+            if (i > 0) {
+                position = emit(position, ',');
+            }
+            switch (array.getType(i)) {
+                case Boolean:
+                    position = putAscii(position, array.getBoolean(i) ? "true" : "false");
+                    break;
+                case Number:
+                    position = putJsonNumber(position, array.getDouble(i));
+                    break;
+                case String:
+                    position = putJsonString(position, array.getString(i));
+                    break;
+                case Map:
+                    position = putJson(position, array.getMap(i));
+                    break;
+                case Array:
+                    position = putJson(position, array.getArray(i));
+                    break;
+                default:
+                    position = putAscii(position, "null");
+                    break;
+            }
+        }
+        return emit(position, ']');
+    }
+
+    private long putJsonString(long position, String value) {
+        if (value == null) {
+            return putAscii(position, "null");
+        }
+        position = emit(position, '"');
+        for (int i = 0; i < value.length(); i++) {
+            int c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                position = emit(position, '\\');
+                position = emit(position, c);
+            } else if (c < 0x20) {
+                position = putAscii(position, "\\u00");
+                position = emit(position, HEX_DIGITS[c >> 4]);
+                position = emit(position, HEX_DIGITS[c & 0xf]);
+            } else {
+                if (Character.isHighSurrogate((char) c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    c = Character.toCodePoint((char) c, value.charAt(++i));
+                }
+                position = putCodePoint(position, c);
+            }
+        }
+        return emit(position, '"');
+    }
+
+    /**
+     * Whole numbers are written digit by digit, others fall back to {@link Double#toString}.
+     * JSON has no NaN and infinities, they are written as null.
+     */
+    private long putJsonNumber(long position, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return putAscii(position, "null");
+        }
+        if (value != Math.rint(value) || Math.abs(value) >= MAX_EXACT_WHOLE) {
+            return putAscii(position, Double.toString(value));
+        }
+        long whole = (long) value;
+        if (whole < 0) {
+            position = emit(position, '-');
+            whole = -whole;
+        }
+        long divisor = 1;
+        while (whole / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            position = emit(position, '0' + (int) (whole / divisor % 10));
+        }
+        return position;
+    }
+
+    private long putAscii(long position, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            position = emit(position, value.charAt(i));
+        }
+        return position;
+    }
+
+    private long emit(long position, int value) {
+        if (!measuring) {
+            putByte(position, (byte) value);
+        }
+        return position + 1;
+    }
+
+    private void putByte(long position, byte value) {
+        buffer.put(HEADER_SIZE + (int) (position % capacity), value);
+    }
+
+    private void putInt(long position, int value) {
+        putByte(position, (byte) (value >>> 24));
+        putByte(position + 1, (byte) (value >>> 16));
+        putByte(position + 2, (byte) (value >>> 8));
+        putByte(position + 3, (byte) value);
+    }
+
+    private static byte getByte(MappedByteBuffer buffer, int capacity, long position) {
+        return buffer.get(HEADER_SIZE + (int) (position % capacity));
+    }
+
+    private static int getInt(MappedByteBuffer buffer, int capacity, long position) {
+        return (getByte(buffer, capacity, position) & 0xff) << 24
+                | (getByte(buffer, capacity, position + 1) & 0xff) << 16
+                | (getByte(buffer, capacity, position + 2) & 0xff) << 8
+                | getByte(buffer, capacity, position + 3) & 0xff;
+    }
+
+    private static String getString(MappedByteBuffer buffer, int capacity, long position, int length) {
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = getByte(buffer, capacity, position + i);
+        }
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
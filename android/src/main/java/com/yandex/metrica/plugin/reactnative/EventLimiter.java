@@ -0,0 +1,171 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-event-name sampling and rate limiting, applied before events are queued for the SDK.
+ * Dropped events are counted and reported periodically as a single summary event.
+ */
+final class EventLimiter {
+
+    static final String SUMMARY_EVENT_NAME = "appmetrica_plugin_dropped_events";
+    // Drops of names beyond MAX_DROPPED_NAMES are counted under it
+    static final String OTHER_EVENTS_KEY = "__other__";
+    static final int MAX_DROPPED_NAMES = 64;
+
+    /**
+     * Sample rate plus a token bucket, kept as a single "theoretical arrival time" (GCRA),
+     * so a decision is one CAS without locks.
+     */
+    static final class Rule {
+
+        private final double sampleRate;
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final AtomicLong sampleCounter = new AtomicLong();
+        private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+
+        Rule(double sampleRate, double perSecond, int burst) {
+            this.sampleRate = sampleRate;
+            this.intervalNanos = perSecond > 0 ? (long) (1000000000L / perSecond) : 0;
+            this.toleranceNanos = intervalNanos * Math.max(burst - 1, 0);
+        }
+
+        boolean tryAcquire(long now) {
+            if (sampleRate < 1) {
+                long count = sampleCounter.incrementAndGet();
+                if ((long) (count * sampleRate) == (long) ((count - 1) * sampleRate)) {
+                    return false;
+                }
+            }
+            if (intervalNanos == 0) {
+                return true;
+            }
+            while (true) {
+                long arrival = theoreticalArrival.get();
+                long next = Math.max(arrival, now) + intervalNanos;
+                if (next - now > toleranceNanos + intervalNanos) {
+                    return false;
+                }
+                if (theoreticalArrival.compareAndSet(arrival, next)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    static final class Policy {
+
+        final Map<String, Rule> rules;
+        final Rule globalRule;
+        final long summaryIntervalMillis;
+
+        Policy(Map<String, Rule> rules, Rule globalRule, long summaryIntervalMillis) {
+            this.rules = rules;
+            this.globalRule = globalRule;
+            this.summaryIntervalMillis = summaryIntervalMillis;
+        }
+    }
+
+    private final ReportDispatcher dispatcher;
+    private final ConcurrentHashMap<String, AtomicLong> droppedCounts = new ConcurrentHashMap<String, AtomicLong>();
+    private final AtomicLong totalDroppedCount = new AtomicLong();
+    private final AtomicBoolean summaryScheduled = new AtomicBoolean(false);
+    private final Runnable summaryTask = new Runnable() {
+        @Override
+        public void run() {
+            reportSummary();
+        }
+    };
+
+    private volatile Policy policy;
+
+    EventLimiter(ReportDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    void setPolicy(Policy policy) {
+        this.policy = policy;
+    }
+
+    long getDroppedCount() {
+        return totalDroppedCount.get();
+    }
+
+    boolean tryAcquire(String eventName) {
+        Policy currentPolicy = policy;
+        if (currentPolicy == null) {
+            return true;
+        }
+        long now = System.nanoTime();
+        Rule rule = currentPolicy.rules.get(eventName);
+        if (rule != null && !rule.tryAcquire(now)) {
+            recordDrop(eventName, currentPolicy);
+            return false;
+        }
+        if (currentPolicy.globalRule != null && !currentPolicy.globalRule.tryAcquire(now)) {
+            recordDrop(eventName, currentPolicy);
+            return false;
+        }
+        return true;
+    }
+
+    private void recordDrop(String eventName, Policy currentPolicy) {
+        AtomicLong counter = droppedCounts.get(eventName);
+        if (counter == null && droppedCounts.size() >= MAX_DROPPED_NAMES) {
+            eventName = OTHER_EVENTS_KEY;
+            counter = droppedCounts.get(eventName);
+        }
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong();
+            counter = droppedCounts.putIfAbsent(eventName, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        counter.incrementAndGet();
+        totalDroppedCount.incrementAndGet();
+        if (summaryScheduled.compareAndSet(false, true)) {
+            dispatcher.schedule(summaryTask, currentPolicy.summaryIntervalMillis);
+        }
+    }
+
+    /**
+     * Names without drops since the last summary are forgotten, so the names kept are the
+     * recently dropped ones.
+     */
+    private void reportSummary() {
+        if (!ActivationController.getInstance().isActive()) {
+            Policy currentPolicy = policy;
+            if (currentPolicy != null) {
+                dispatcher.schedule(summaryTask, currentPolicy.summaryIntervalMillis);
+                return;
+            }
+        }
+        summaryScheduled.set(false);
+        Map<String, Object> summary = new HashMap<String, Object>();
+        for (Map.Entry<String, AtomicLong> entry : droppedCounts.entrySet()) {
+            long count = entry.getValue().getAndSet(0);
+            if (count > 0) {
+                summary.put(entry.getKey(), count);
+            } else {
+                droppedCounts.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        if (!summary.isEmpty()) {
+            ReporterBackends.get().reportEvent(SUMMARY_EVENT_NAME, summary);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Event shapes registered from JS. Events reported by schema ID carry positional values only,
+ * the attribute keys are taken from the schema and value types are resolved once at registration.
+ */
+final class EventSchemaRegistry {
+
+    static final int INVALID_ID = -1;
+
+    private static final int MAX_SCHEMAS = 1024;
+
+    private static final int TYPE_ANY = 0;
+    private static final int TYPE_STRING = 1;
+    private static final int TYPE_NUMBER = 2;
+    private static final int TYPE_BOOLEAN = 3;
+    private static final int TYPE_OBJECT = 4;
+    private static final int TYPE_ARRAY = 5;
+
+    static final class Schema {
+        final String eventName;
+        private final String[] keys;
+        private final int[] types;
+
+        private Schema(String eventName, String[] keys, int[] types) {
+            this.eventName = eventName;
+            this.keys = keys;
+            this.types = types;
+        }
+
+        /**
+         * @return event attributes, or null if the values don't match the schema
+         */
+        Map<String, Object> toAttributes(ReadableArray values) {
+            int size = values.size();
+            if (size > keys.length) {
+                return null;
+            }
+            Map<String, Object> attributes = new HashMap<String, Object>(keys.length * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                ReadableType type = values.getType(i);
+                if (type == ReadableType.Null) {
+                    continue;
+                }
+                if (!matches(types[i], type)) {
+                    return null;
+                }
+                switch (type) {
+                    case Boolean:
+                        attributes.put(keys[i], values.getBoolean(i));
+                        break;
+                    case Number:
+                        attributes.put(keys[i], values.getDouble(i));
+                        break;
+                    case String:
+                        attributes.put(keys[i], values.getString(i));
+                        break;
+                    case Map:
+                        attributes.put(keys[i], values.getMap(i).toHashMap());
+                        break;
+                    case Array:
+                        attributes.put(keys[i], values.getArray(i).toArrayList());
+                        break;
+                }
+            }
+            return attributes;
+        }
+
+        private static boolean matches(int expected, ReadableType actual) {
+            switch (expected) {
+                case TYPE_STRING:
+                    return actual == ReadableType.String;
+                case TYPE_NUMBER:
+                    return actual == ReadableType.Number;
+                case TYPE_BOOLEAN:
+                    return actual == ReadableType.Boolean;
+                case TYPE_OBJECT:
+                    return actual == ReadableType.Map;
+                case TYPE_ARRAY:
+                    return actual == ReadableType.Array;
+                default:
+                    return true;
+            }
+        }
+    }
+
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+    private volatile Schema[] schemas = new Schema[0];
+
+    /**
+     * Registering the same schema again returns the same ID, so JS reloads don't use up IDs.
+     *
+     * @throws IllegalArgumentException if the schema is malformed or too many schemas are registered
+     */
+    synchronized int register(String eventName, ReadableArray keys, ReadableArray types) {
+        if (eventName == null) {
+            throw new IllegalArgumentException("event name is null");
+        }
+        if (keys == null) {
+            throw new IllegalArgumentException("keys are null");
+        }
+        if (types != null && types.size() != keys.size()) {
+            throw new IllegalArgumentException("expected " + keys.size() + " types, got " + types.size());
+        }
+
+        int count = keys.size();
+        String[] schemaKeys = new String[count];
+        int[] schemaTypes = new int[count];
+        StringBuilder signature = new StringBuilder(eventName);
+        for (int i = 0; i < count; i++) {
+            if (keys.getType(i) != ReadableType.String) {
+                throw new IllegalArgumentException("key " + i + " is not a string");
+            }
+            String key = keys.getString(i);
+            for (int j = 0; j < i; j++) {
+                if (schemaKeys[j].equals(key)) {
+                    throw new IllegalArgumentException("duplicate key " + key);
+                }
+            }
+            schemaKeys[i] = key;
+            schemaTypes[i] = types == null || types.isNull(i) ? TYPE_ANY : toType(types.getString(i));
+            signature.append('\u0000').append(key).append('\u0000').append(schemaTypes[i]);
+        }
+
+        String signatureKey = signature.toString();
+        Integer existing = ids.get(signatureKey);
+        if (existing != null) {
+            return existing;
+        }
+        Schema[] current = schemas;
+        if (current.length >= MAX_SCHEMAS) {
+            throw new IllegalArgumentException("more than " + MAX_SCHEMAS + " schemas registered");
+        }
+        Schema[] updated = new Schema[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = new Schema(eventName, schemaKeys, schemaTypes);
+        schemas = updated;
+        ids.put(signatureKey, current.length);
+        return current.length;
+    }
+
+    /**
+     * @return the schema, or null if the ID was not returned by {@link #register}
+     */
+    Schema get(int id) {
+        Schema[] current = schemas;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    private static int toType(String type) {
+        if ("string".equals(type)) {
+            return TYPE_STRING;
+        } else if ("number".equals(type)) {
+            return TYPE_NUMBER;
+        } else if ("boolean".equals(type)) {
+            return TYPE_BOOLEAN;
+        } else if ("object".equals(type)) {
+            return TYPE_OBJECT;
+        } else if ("array".equals(type)) {
+            return TYPE_ARRAY;
+        } else if ("any".equals(type)) {
+            return TYPE_ANY;
+        }
+        throw new IllegalArgumentException("unknown type " + type);
+    }
+}
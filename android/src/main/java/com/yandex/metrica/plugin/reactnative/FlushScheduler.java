@@ -0,0 +1,194 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Calls {@code sendEventsBuffer} when there is something to send: after a number of reports,
+ * when the oldest unsent report gets too old, or when the app goes to background.
+ * Automatic flushes are put off with exponential backoff while the device is offline.
+ * Everything except the counters runs on the {@link ReportDispatcher} thread.
+ */
+final class FlushScheduler {
+
+    enum Reason {
+        PENDING_COUNT("pendingCount"),
+        MAX_AGE("maxAge"),
+        HOST_PAUSE("hostPause"),
+        MANUAL("manual");
+
+        final String label;
+
+        Reason(String label) {
+            this.label = label;
+        }
+    }
+
+    static final class Policy {
+
+        static final Policy DISABLED = new Policy(0, 0, false, 0);
+
+        final int maxPendingEvents;
+        final long maxEventAgeMillis;
+        final boolean flushOnPause;
+        final long maxOfflineBackoffMillis;
+
+        Policy(int maxPendingEvents, long maxEventAgeMillis, boolean flushOnPause, long maxOfflineBackoffMillis) {
+            this.maxPendingEvents = maxPendingEvents;
+            this.maxEventAgeMillis = maxEventAgeMillis;
+            this.flushOnPause = flushOnPause;
+            this.maxOfflineBackoffMillis = maxOfflineBackoffMillis;
+        }
+    }
+
+    private static final Reason[] REASONS = Reason.values();
+    private static final long MIN_OFFLINE_BACKOFF_MILLIS = 5000L;
+
+    private final ReportDispatcher dispatcher;
+    private final Context context;
+    private final AtomicLongArray flushCounts = new AtomicLongArray(REASONS.length);
+    private final AtomicLongArray deferredCounts = new AtomicLongArray(REASONS.length);
+    private final Runnable checkTask = new Runnable() {
+        @Override
+        public void run() {
+            checkScheduled = false;
+            check();
+        }
+    };
+
+    private Policy policy = Policy.DISABLED;
+    private int pendingCount = 0;
+    private long oldestPendingMillis = 0;
+    private long retryAtMillis = 0;
+    private long backoffMillis = 0;
+    private boolean checkScheduled = false;
+
+    FlushScheduler(ReportDispatcher dispatcher, Context context) {
+        this.dispatcher = dispatcher;
+        this.context = context;
+    }
+
+    void setPolicy(Policy policy) {
+        this.policy = policy;
+        if (pendingCount > 0) {
+            check();
+        }
+    }
+
+    /**
+     * Called after every report handed to the SDK.
+     */
+    void onReport() {
+        Policy current = policy;
+        if (current == Policy.DISABLED) {
+            return;
+        }
+        pendingCount++;
+        if (pendingCount == 1) {
+            oldestPendingMillis = now();
+            if (current.maxEventAgeMillis > 0) {
+                scheduleCheck(current.maxEventAgeMillis);
+            }
+        }
+        if (current.maxPendingEvents > 0 && pendingCount >= current.maxPendingEvents && retryAtMillis == 0) {
+            flush(Reason.PENDING_COUNT);
+        }
+    }
+
+    void onHostPause() {
+        if (policy.flushOnPause && pendingCount > 0) {
+            flush(Reason.HOST_PAUSE);
+        }
+    }
+
+    void flushNow() {
+        flush(Reason.MANUAL);
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> flushes = new HashMap<String, Object>();
+        Map<String, Object> deferred = new HashMap<String, Object>();
+        for (Reason reason : REASONS) {
+            flushes.put(reason.label, (double) flushCounts.get(reason.ordinal()));
+            deferred.put(reason.label, (double) deferredCounts.get(reason.ordinal()));
+        }
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put("flushes", flushes);
+        stats.put("deferredOffline", deferred);
+        return stats;
+    }
+
+    private void check() {
+        Policy current = policy;
+        if (pendingCount == 0 || current == Policy.DISABLED) {
+            return;
+        }
+        long now = now();
+        long due = retryAtMillis;
+        if (current.maxEventAgeMillis > 0) {
+            due = Math.max(due, oldestPendingMillis + current.maxEventAgeMillis);
+        } else if (due == 0) {
+            return;
+        }
+        if (now >= due) {
+            flush(current.maxPendingEvents > 0 && pendingCount >= current.maxPendingEvents
+                    ? Reason.PENDING_COUNT : Reason.MAX_AGE);
+        } else {
+            scheduleCheck(due - now);
+        }
+    }
+
+    private void flush(Reason reason) {
+        if (reason != Reason.MANUAL && !isOnline()) {
+            deferredCounts.incrementAndGet(reason.ordinal());
+            long maxBackoff = Math.max(policy.maxOfflineBackoffMillis, MIN_OFFLINE_BACKOFF_MILLIS);
+            backoffMillis = backoffMillis == 0 ? MIN_OFFLINE_BACKOFF_MILLIS : Math.min(backoffMillis * 2, maxBackoff);
+            retryAtMillis = now() + backoffMillis;
+            scheduleCheck(backoffMillis);
+            return;
+        }
+        ReporterBackends.get().sendEventsBuffer();
+        flushCounts.incrementAndGet(reason.ordinal());
+        pendingCount = 0;
+        retryAtMillis = 0;
+        backoffMillis = 0;
+    }
+
+    private void scheduleCheck(long delayMillis) {
+        if (!checkScheduled) {
+            checkScheduled = true;
+            dispatcher.schedule(checkTask, delayMillis);
+        }
+    }
+
+    private boolean isOnline() {
+        ConnectivityManager manager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (manager == null) {
+            return true;
+        }
+        try {
+            NetworkInfo network = manager.getActiveNetworkInfo();
+            return network != null && network.isConnected();
+        } catch (SecurityException e) {
+            // No ACCESS_NETWORK_STATE permission, assume the network is there
+            return true;
+        }
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000L;
+    }
+}
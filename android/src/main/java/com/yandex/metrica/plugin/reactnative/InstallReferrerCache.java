@@ -0,0 +1,313 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import android.content.Context;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.android.installreferrer.api.InstallReferrerClient;
+import com.android.installreferrer.api.InstallReferrerStateListener;
+import com.android.installreferrer.api.ReferrerDetails;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fetches the Google Play install referrer once, keeps it in {@link PluginStorage} and reports it
+ * as the referral URL after activation. Later launches are served from storage without binding
+ * to the Play service. A connection that doesn't set up in time is dropped, and a failed fetch
+ * is retried a few times per launch. A device without the Play referrer service is remembered and
+ * never asked again.
+ * Only accessed from the {@link ReportDispatcher} thread.
+ */
+final class InstallReferrerCache {
+
+    interface Listener {
+        void onResult(InstallReferrer referrer, String error);
+    }
+
+    static final class InstallReferrer {
+
+        final String referrer;
+        final long clickTimestampSeconds;
+        final long installBeginTimestampSeconds;
+
+        InstallReferrer(String referrer, long clickTimestampSeconds, long installBeginTimestampSeconds) {
+            this.referrer = referrer;
+            this.clickTimestampSeconds = clickTimestampSeconds;
+            this.installBeginTimestampSeconds = installBeginTimestampSeconds;
+        }
+    }
+
+    private static final String TAG = "AppMetricaReferrer";
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long CONNECTION_TIMEOUT_MILLIS = 5000L;
+    private static final long RETRY_DELAY_MILLIS = 2000L;
+
+    private static final InstallReferrerCache INSTANCE = new InstallReferrerCache();
+
+    private final ReportDispatcher dispatcher = ReportDispatcher.getInstance();
+    private final List<Listener> waitingListeners = new ArrayList<Listener>();
+    private final Runnable fetchTask = new Runnable() {
+        @Override
+        public void run() {
+            fetch();
+        }
+    };
+
+    private Context context;
+    private PluginStorage storage;
+    private InstallReferrer cachedReferrer;
+    private boolean unavailable = false;
+    private boolean reported = false;
+    private InstallReferrerClient client;
+    private int connectionGeneration = 0;
+    private boolean retryScheduled = false;
+    private volatile int attempts = 0;
+    private volatile String state = "unknown";
+
+    private InstallReferrerCache() {
+    }
+
+    static InstallReferrerCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Fetches the referrer if it's not cached yet and reports it unless already reported.
+     */
+    void onActivated(final Context context) {
+        dispatcher.dispatchControl(new Runnable() {
+            @Override
+            public void run() {
+                load(context);
+                if (cachedReferrer != null) {
+                    reportIfNeeded();
+                } else {
+                    fetch();
+                }
+            }
+        });
+    }
+
+    /**
+     * Serves the cached referrer, otherwise joins or starts a fetch. The listener is called on the
+     * {@link ReportDispatcher} thread, with null and no error if the device has no referrer service.
+     */
+    void request(final Context context, final Listener listener) {
+        dispatcher.dispatchControl(new Runnable() {
+            @Override
+            public void run() {
+                load(context);
+                if (cachedReferrer != null || unavailable) {
+                    listener.onResult(cachedReferrer, null);
+                    return;
+                }
+                waitingListeners.add(listener);
+                if (attempts >= MAX_ATTEMPTS && client == null && !retryScheduled) {
+                    complete("SERVICE_UNAVAILABLE");
+                } else {
+                    fetch();
+                }
+            }
+        });
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put("state", state);
+        stats.put("attempts", (double) attempts);
+        return stats;
+    }
+
+    private void load(Context context) {
+        if (storage != null) {
+            return;
+        }
+        this.context = context.getApplicationContext();
+        storage = new PluginStorage(context);
+        String json = storage.getInstallReferrer();
+        if (json == null) {
+            return;
+        }
+        try {
+            JSONObject saved = new JSONObject(json);
+            if (saved.optBoolean("unavailable")) {
+                unavailable = true;
+                state = "unavailable";
+            } else {
+                cachedReferrer = new InstallReferrer(
+                        saved.optString("referrer", null),
+                        saved.optLong("clickTimestamp"),
+                        saved.optLong("installBeginTimestamp"));
+                reported = saved.optBoolean("reported");
+                state = "cached";
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "Failed to restore install referrer", e);
+        }
+    }
+
+    private void save() {
+        try {
+            JSONObject json = new JSONObject();
+            if (unavailable) {
+                json.put("unavailable", true);
+            } else {
+                json.put("referrer", cachedReferrer.referrer);
+                json.put("clickTimestamp", cachedReferrer.clickTimestampSeconds);
+                json.put("installBeginTimestamp", cachedReferrer.installBeginTimestampSeconds);
+                json.put("reported", reported);
+            }
+            storage.putInstallReferrer(json.toString());
+        } catch (JSONException e) {
+            Log.w(TAG, "Failed to save install referrer", e);
+        }
+    }
+
+    private void fetch() {
+        retryScheduled = false;
+        if (cachedReferrer != null || unavailable || client != null || attempts >= MAX_ATTEMPTS) {
+            return;
+        }
+        attempts++;
+        state = "fetching";
+        final int generation = ++connectionGeneration;
+        client = InstallReferrerClient.newBuilder(context).build();
+        try {
+            // Setup callbacks come on the main thread
+            client.startConnection(new InstallReferrerStateListener() {
+                @Override
+                public void onInstallReferrerSetupFinished(final int responseCode) {
+                    dispatcher.dispatchControl(new Runnable() {
+                        @Override
+                        public void run() {
+                            onSetupFinished(generation, responseCode);
+                        }
+                    });
+                }
+
+                @Override
+                public void onInstallReferrerServiceDisconnected() {
+                    dispatcher.dispatchControl(new Runnable() {
+                        @Override
+                        public void run() {
+                            onSetupFinished(generation, InstallReferrerClient.InstallReferrerResponse.SERVICE_DISCONNECTED);
+                        }
+                    });
+                }
+            });
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to connect to the install referrer service", e);
+            onSetupFinished(generation, InstallReferrerClient.InstallReferrerResponse.SERVICE_UNAVAILABLE);
+            return;
+        }
+        dispatcher.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (generation == connectionGeneration && client != null) {
+                    retry("TIMEOUT");
+                }
+            }
+        }, CONNECTION_TIMEOUT_MILLIS);
+    }
+
+    private void onSetupFinished(int generation, int responseCode) {
+        if (generation != connectionGeneration || client == null) {
+            return;
+        }
+        switch (responseCode) {
+            case InstallReferrerClient.InstallReferrerResponse.OK:
+                try {
+                    ReferrerDetails details = client.getInstallReferrer();
+                    cachedReferrer = new InstallReferrer(
+                            details.getInstallReferrer(),
+                            details.getReferrerClickTimestampSeconds(),
+                            details.getInstallBeginTimestampSeconds());
+                } catch (RemoteException e) {
+                    retry("SERVICE_UNAVAILABLE");
+                    return;
+                } catch (RuntimeException e) {
+                    retry("SERVICE_UNAVAILABLE");
+                    return;
+                }
+                disconnect();
+                state = "cached";
+                save();
+                complete(null);
+                reportIfNeeded();
+                break;
+            case InstallReferrerClient.InstallReferrerResponse.FEATURE_NOT_SUPPORTED:
+            case InstallReferrerClient.InstallReferrerResponse.DEVELOPER_ERROR:
+            case InstallReferrerClient.InstallReferrerResponse.PERMISSION_ERROR:
+                disconnect();
+                unavailable = true;
+                state = "unavailable";
+                save();
+                complete(null);
+                break;
+            default:
+                retry(responseCode == InstallReferrerClient.InstallReferrerResponse.SERVICE_DISCONNECTED
+                        ? "SERVICE_DISCONNECTED" : "SERVICE_UNAVAILABLE");
+                break;
+        }
+    }
+
+    private void retry(String error) {
+        disconnect();
+        if (attempts < MAX_ATTEMPTS) {
+            retryScheduled = true;
+            dispatcher.schedule(fetchTask, RETRY_DELAY_MILLIS << (attempts - 1));
+        } else {
+            state = "failed";
+            Log.w(TAG, "Failed to get install referrer: " + error);
+            complete(error);
+        }
+    }
+
+    private void disconnect() {
+        InstallReferrerClient connectedClient = client;
+        client = null;
+        connectionGeneration++;
+        try {
+            connectedClient.endConnection();
+        } catch (RuntimeException ignored) {
+        }
+    }
+
+    private void complete(String error) {
+        List<Listener> listeners = new ArrayList<Listener>(waitingListeners);
+        waitingListeners.clear();
+        for (Listener listener : listeners) {
+            listener.onResult(error == null ? cachedReferrer : null, error);
+        }
+    }
+
+    private void reportIfNeeded() {
+        if (reported || cachedReferrer.referrer == null || !ActivationController.getInstance().isActive()) {
+            return;
+        }
+        try {
+            ReporterBackends.get().reportReferralUrl("https://play.google.com/store/apps/details?id="
+                    + context.getPackageName() + "&referrer=" + URLEncoder.encode(cachedReferrer.referrer, "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+        reported = true;
+        save();
+    }
+}
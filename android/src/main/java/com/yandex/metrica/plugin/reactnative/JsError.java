@@ -0,0 +1,123 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * JS error with the stack trace parsed from the JS stack string. The Java stack of the
+ * caller is never captured, {@link #fillInStackTrace()} does nothing.
+ *
+ * <p>Frames are rendered the way JS engines print them: {@code JS.render(index.android.bundle:1:2345)},
+ * so the file name carries the line and the line number carries the column.
+ */
+final class JsError extends Throwable {
+
+    static final String DECLARING_CLASS = "JS";
+
+    private static final int MAX_FRAMES = 64;
+    private static final int NATIVE_METHOD = -2;
+
+    // Hermes and V8: "at render (index.android.bundle:1:2345)", "at index.bundle:12:5", "at call (native)"
+    private static final Pattern AT_FRAME = Pattern.compile(
+            "^\\s*at\\s+(?:(.+?)\\s+\\()?(?:address at\\s+)?([^()]+?)(?::(\\d+))?(?::(\\d+))?\\)?\\s*$");
+    // JavaScriptCore: "render@index.ios.bundle:1:2345", "[native code]"
+    private static final Pattern AT_SIGN_FRAME = Pattern.compile(
+            "^\\s*(?:(.*?)@)?(.+?)(?::(\\d+))?(?::(\\d+))?\\s*$");
+
+    JsError(String message, String jsStack) {
+        super(message);
+        setStackTrace(parseStack(jsStack));
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+    static StackTraceElement[] parseStack(String jsStack) {
+        if (jsStack == null || jsStack.isEmpty()) {
+            return new StackTraceElement[0];
+        }
+        List<StackTraceElement> frames = new ArrayList<StackTraceElement>();
+        int start = 0;
+        int length = jsStack.length();
+        while (start < length && frames.size() < MAX_FRAMES) {
+            int end = jsStack.indexOf('\n', start);
+            if (end < 0) {
+                end = length;
+            }
+            StackTraceElement frame = parseFrame(jsStack.substring(start, end));
+            if (frame != null) {
+                frames.add(frame);
+            }
+            start = end + 1;
+        }
+        return frames.toArray(new StackTraceElement[frames.size()]);
+    }
+
+    private static StackTraceElement parseFrame(String line) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+        if ("[native code]".equals(trimmed)) {
+            return new StackTraceElement(DECLARING_CLASS, "<anonymous>", null, NATIVE_METHOD);
+        }
+        Matcher matcher;
+        if (trimmed.startsWith("at ")) {
+            matcher = AT_FRAME.matcher(trimmed);
+        } else if (trimmed.indexOf('@') >= 0 || trimmed.indexOf(':') >= 0) {
+            matcher = AT_SIGN_FRAME.matcher(trimmed);
+        } else {
+            // The "Error: message" header or something we can't read
+            return null;
+        }
+        if (!matcher.matches()) {
+            return null;
+        }
+        String function = matcher.group(1);
+        if (function == null || function.isEmpty()) {
+            function = "<anonymous>";
+        }
+        String file = matcher.group(2);
+        if ("native".equals(file)) {
+            return new StackTraceElement(DECLARING_CLASS, function, null, NATIVE_METHOD);
+        }
+        String lineNumber = matcher.group(3);
+        String column = matcher.group(4);
+        if (lineNumber == null) {
+            return null;
+        }
+        file = fileName(file);
+        if (column == null) {
+            return new StackTraceElement(DECLARING_CLASS, function, file, parseInt(lineNumber));
+        }
+        return new StackTraceElement(DECLARING_CLASS, function, file + ":" + lineNumber, parseInt(column));
+    }
+
+    private static String fileName(String location) {
+        int query = location.indexOf('?');
+        if (query >= 0) {
+            location = location.substring(0, query);
+        }
+        return location.substring(location.lastIndexOf('/') + 1);
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
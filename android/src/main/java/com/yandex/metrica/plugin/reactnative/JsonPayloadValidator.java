@@ -0,0 +1,250 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+/**
+ * Checks pre-serialized event attributes in a single pass over the characters, without building
+ * the object tree: the payload must be one well-formed JSON object within the UTF-8 size and
+ * nesting limits. Only accessed from the {@link ReportDispatcher} thread.
+ */
+final class JsonPayloadValidator {
+
+    static final int NO_LIMIT = 0;
+
+    private static final int INITIAL_STACK_SIZE = 16;
+
+    private volatile int maxLength = NO_LIMIT;
+    private volatile int maxDepth = NO_LIMIT;
+
+    // Whether each open container is an object, grown on demand and reused
+    private boolean[] objectStack = new boolean[INITIAL_STACK_SIZE];
+    private String json;
+    private int position;
+
+    void setMaxLength(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    boolean isEnabled() {
+        return maxLength > NO_LIMIT || maxDepth > NO_LIMIT;
+    }
+
+    /**
+     * @return null if the payload is acceptable, otherwise the reason it was rejected
+     */
+    String validate(String json) {
+        int lengthLimit = maxLength;
+        if (lengthLimit > NO_LIMIT) {
+            int length = Utils.utf8Length(json);
+            if (length > lengthLimit) {
+                return "size " + length + " bytes exceeds " + lengthLimit;
+            }
+        }
+        this.json = json;
+        try {
+            return parse(maxDepth);
+        } finally {
+            this.json = null;
+        }
+    }
+
+    private String parse(int depthLimit) {
+        int length = json.length();
+        int depth = 0;
+        position = 0;
+        skipWhitespace();
+        if (position >= length || json.charAt(position) != '{') {
+            return "attributes must be a JSON object";
+        }
+        // Each iteration reads one value, preceded by a key inside objects
+        boolean expectKey = false;
+        while (true) {
+            skipWhitespace();
+            if (expectKey) {
+                if (!readString()) {
+                    return error("expected a key");
+                }
+                skipWhitespace();
+                if (position >= length || json.charAt(position) != ':') {
+                    return error("expected ':'");
+                }
+                position++;
+                skipWhitespace();
+            }
+            if (position >= length) {
+                return "unterminated JSON";
+            }
+            char c = json.charAt(position);
+            if (c == '{' || c == '[') {
+                position++;
+                depth++;
+                if (depthLimit > NO_LIMIT && depth > depthLimit) {
+                    return "depth exceeds " + depthLimit;
+                }
+                push(depth, c == '{');
+                skipWhitespace();
+                if (position < length && json.charAt(position) == (c == '{' ? '}' : ']')) {
+                    position++;
+                    depth--;
+                } else {
+                    expectKey = c == '{';
+                    continue;
+                }
+            } else if (!readScalar()) {
+                return error("unexpected character");
+            }
+            // After a value: close containers or move on to the next element
+            while (true) {
+                skipWhitespace();
+                if (depth == 0) {
+                    return position == length ? null : error("unexpected data after the object");
+                }
+                if (position >= length) {
+                    return "unterminated JSON";
+                }
+                c = json.charAt(position++);
+                boolean inObject = objectStack[depth - 1];
+                if (c == ',') {
+                    expectKey = inObject;
+                    break;
+                }
+                if (c != (inObject ? '}' : ']')) {
+                    position--;
+                    return error("expected ',' or a closing bracket");
+                }
+                depth--;
+            }
+        }
+    }
+
+    private void push(int depth, boolean isObject) {
+        if (depth > objectStack.length) {
+            boolean[] grown = new boolean[objectStack.length * 2];
+            System.arraycopy(objectStack, 0, grown, 0, objectStack.length);
+            objectStack = grown;
+        }
+        objectStack[depth - 1] = isObject;
+    }
+
+    private boolean readScalar() {
+        char c = json.charAt(position);
+        switch (c) {
+            case '"':
+                return readString();
+            case 't':
+                return readLiteral("true");
+            case 'f':
+                return readLiteral("false");
+            case 'n':
+                return readLiteral("null");
+            default:
+                return readNumber();
+        }
+    }
+
+    private boolean readString() {
+        int length = json.length();
+        if (position >= length || json.charAt(position) != '"') {
+            return false;
+        }
+        position++;
+        while (position < length) {
+            char c = json.charAt(position++);
+            if (c == '"') {
+                return true;
+            }
+            if (c < 0x20) {
+                return false;
+            }
+            if (c == '\\') {
+                if (position >= length) {
+                    return false;
+                }
+                char escaped = json.charAt(position++);
+                if (escaped == 'u') {
+                    for (int i = 0; i < 4; i++) {
+                        if (position >= length || Character.digit(json.charAt(position++), 16) < 0) {
+                            return false;
+                        }
+                    }
+                } else if ("\"\\/bfnrt".indexOf(escaped) < 0) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean readLiteral(String literal) {
+        if (!json.startsWith(literal, position)) {
+            return false;
+        }
+        position += literal.length();
+        return true;
+    }
+
+    private boolean readNumber() {
+        int start = position;
+        if (peek() == '-') {
+            position++;
+        }
+        if (peek() == '0') {
+            position++;
+        } else if (!readDigits()) {
+            return false;
+        }
+        if (peek() == '.') {
+            position++;
+            if (!readDigits()) {
+                return false;
+            }
+        }
+        if (peek() == 'e' || peek() == 'E') {
+            position++;
+            if (peek() == '+' || peek() == '-') {
+                position++;
+            }
+            if (!readDigits()) {
+                return false;
+            }
+        }
+        return position > start;
+    }
+
+    private boolean readDigits() {
+        int start = position;
+        while (peek() >= '0' && peek() <= '9') {
+            position++;
+        }
+        return position > start;
+    }
+
+    private char peek() {
+        return position < json.length() ? json.charAt(position) : 0;
+    }
+
+    private void skipWhitespace() {
+        int length = json.length();
+        while (position < length) {
+            char c = json.charAt(position);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private String error(String reason) {
+        return reason + " at " + position;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import android.location.Location;
+
+import com.facebook.react.bridge.ReadableMap;
+
+/**
+ * Drops setLocation updates that tell the SDK nothing new: ones that come too soon after the
+ * last passed update, or are too close to it for their accuracy. A fix at least twice as
+ * accurate as the last passed one always gets through, even within the interval.
+ *
+ * <p>Updates are parsed into a reused scratch location, only passed updates are copied, because
+ * the SDK may keep the instance it is given. Only accessed from the {@link ReportDispatcher}
+ * thread.
+ */
+final class LocationThrottle {
+
+    private static final float ACCURACY_IMPROVEMENT = 0.5f;
+
+    private final Location candidate = new Location(Utils.LOCATION_PROVIDER);
+    private final float[] distance = new float[1];
+    private long minIntervalMillis = 0;
+    private float minDistanceMeters = 0;
+    private Location last = null;
+    private long lastMillis = 0;
+    private volatile long suppressedCount = 0;
+
+    void setPolicy(long minIntervalMillis, float minDistanceMeters) {
+        this.minIntervalMillis = minIntervalMillis;
+        this.minDistanceMeters = minDistanceMeters;
+    }
+
+    long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    /**
+     * @return the location to pass to the SDK, or null if the update is dropped
+     */
+    Location offer(ReadableMap locationMap, long nowMillis) {
+        if (minIntervalMillis <= 0 && minDistanceMeters <= 0) {
+            return Utils.toLocation(locationMap);
+        }
+        Utils.toLocation(locationMap, candidate);
+        if (last != null && !isSignificant(nowMillis)) {
+            suppressedCount++;
+            return null;
+        }
+        last = new Location(candidate);
+        lastMillis = nowMillis;
+        return last;
+    }
+
+    /**
+     * Called when the location is cleared, the next update always passes.
+     */
+    void reset() {
+        last = null;
+    }
+
+    /**
+     * A much more accurate fix passes regardless of the interval and distance,
+     * otherwise the update must be both late and far enough.
+     */
+    private boolean isSignificant(long nowMillis) {
+        if (isMoreAccurate()) {
+            return true;
+        }
+        if (nowMillis - lastMillis < minIntervalMillis) {
+            return false;
+        }
+        if (minDistanceMeters <= 0) {
+            return true;
+        }
+        Location.distanceBetween(last.getLatitude(), last.getLongitude(),
+                candidate.getLatitude(), candidate.getLongitude(), distance);
+        float meters = distance[0];
+        return meters >= minDistanceMeters && (!candidate.hasAccuracy() || meters >= candidate.getAccuracy());
+    }
+
+    private boolean isMoreAccurate() {
+        return candidate.hasAccuracy()
+                && (!last.hasAccuracy() || candidate.getAccuracy() < last.getAccuracy() * ACCURACY_IMPROVEMENT);
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Aggregates counters and value histograms natively and reports one event per metric, named after it.
+ * Metric keys are looked up by a 64-bit hash of the name and dimensions, values live in primitive arrays.
+ * Histograms keep log-scale buckets (four per power of two) for the p50/p90/p99 estimates.
+ * Only accessed from the {@link ReportDispatcher} thread.
+ */
+final class MetricsAggregator {
+
+    static final String OVERFLOW_EVENT_NAME = "appmetrica_plugin_metrics_overflow";
+    static final int DEFAULT_MAX_KEYS = 256;
+
+    private static final int SUBBUCKETS = 4;
+    private static final int MIN_EXPONENT = -10;
+    private static final int MAX_EXPONENT = 30;
+    private static final double MIN_BUCKET_VALUE = Math.pow(2, MIN_EXPONENT);
+    private static final double MAX_BUCKET_VALUE = Math.pow(2, MAX_EXPONENT);
+    static final int BUCKET_COUNT = 2 + (MAX_EXPONENT - MIN_EXPONENT) * SUBBUCKETS;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int maxKeys = DEFAULT_MAX_KEYS;
+    private SlotIndex counterIndex = new SlotIndex(DEFAULT_MAX_KEYS);
+    private int counterCount = 0;
+    private long[] counterHashes = new long[INITIAL_CAPACITY];
+    private String[] counterNames = new String[INITIAL_CAPACITY];
+    private Object[] counterDimensions = new Object[INITIAL_CAPACITY];
+    private double[] counterValues = new double[INITIAL_CAPACITY];
+    private boolean[] counterTouched = new boolean[INITIAL_CAPACITY];
+
+    private SlotIndex histogramIndex = new SlotIndex(DEFAULT_MAX_KEYS);
+    private int histogramCount = 0;
+    private long[] histogramHashes = new long[INITIAL_CAPACITY];
+    private String[] histogramNames = new String[INITIAL_CAPACITY];
+    private long[] histogramCounts = new long[INITIAL_CAPACITY];
+    private double[] histogramSums = new double[INITIAL_CAPACITY];
+    private double[] histogramMins = new double[INITIAL_CAPACITY];
+    private double[] histogramMaxs = new double[INITIAL_CAPACITY];
+    private long[] histogramBuckets = new long[INITIAL_CAPACITY * BUCKET_COUNT];
+
+    private boolean dirty = false;
+    private long pendingOverflow = 0;
+    private volatile int keyCount = 0;
+    private volatile long overflowCount = 0;
+
+    /**
+     * Limits the number of distinct counter and histogram keys kept between flushes.
+     * Updates of new keys above it are dropped and reported in an {@link #OVERFLOW_EVENT_NAME} event.
+     */
+    void setMaxKeys(int maxKeys) {
+        this.maxKeys = Math.max(1, maxKeys);
+        counterIndex = new SlotIndex(this.maxKeys);
+        histogramIndex = new SlotIndex(this.maxKeys);
+        reindex();
+    }
+
+    private void reindex() {
+        for (int i = 0; i < counterCount; i++) {
+            counterIndex.put(counterHashes[i], i);
+        }
+        for (int i = 0; i < histogramCount; i++) {
+            histogramIndex.put(histogramHashes[i], i);
+        }
+    }
+
+    void incrementCounter(String name, double delta, ReadableMap dimensions) {
+        long hash = keyHash(name, dimensions);
+        int slot = counterIndex.get(hash);
+        if (slot < 0) {
+            if (!hasRoomForKey()) {
+                return;
+            }
+            slot = counterCount++;
+            if (slot == counterHashes.length) {
+                int capacity = slot * 2;
+                counterHashes = Arrays.copyOf(counterHashes, capacity);
+                counterNames = Arrays.copyOf(counterNames, capacity);
+                counterDimensions = Arrays.copyOf(counterDimensions, capacity);
+                counterValues = Arrays.copyOf(counterValues, capacity);
+                counterTouched = Arrays.copyOf(counterTouched, capacity);
+            }
+            counterHashes[slot] = hash;
+            counterNames[slot] = name;
+            counterDimensions[slot] = dimensions != null && dimensions.keySetIterator().hasNextKey()
+                ? dimensions.toHashMap()
+                : null;
+            counterIndex.put(hash, slot);
+            keyCount = counterCount + histogramCount;
+        }
+        counterValues[slot] += delta;
+        counterTouched[slot] = true;
+        dirty = true;
+    }
+
+    void recordValue(String name, double value) {
+        long hash = keyHash(name, null);
+        int slot = histogramIndex.get(hash);
+        if (slot < 0) {
+            if (!hasRoomForKey()) {
+                return;
+            }
+            slot = histogramCount++;
+            if (slot == histogramHashes.length) {
+                int capacity = slot * 2;
+                histogramHashes = Arrays.copyOf(histogramHashes, capacity);
+                histogramNames = Arrays.copyOf(histogramNames, capacity);
+                histogramCounts = Arrays.copyOf(histogramCounts, capacity);
+                histogramSums = Arrays.copyOf(histogramSums, capacity);
+                histogramMins = Arrays.copyOf(histogramMins, capacity);
+                histogramMaxs = Arrays.copyOf(histogramMaxs, capacity);
+                histogramBuckets = Arrays.copyOf(histogramBuckets, capacity * BUCKET_COUNT);
+            }
+            histogramHashes[slot] = hash;
+            histogramNames[slot] = name;
+            histogramIndex.put(hash, slot);
+            keyCount = counterCount + histogramCount;
+        }
+        if (histogramCounts[slot] == 0) {
+            histogramMins[slot] = value;
+            histogramMaxs[slot] = value;
+        } else {
+            histogramMins[slot] = Math.min(histogramMins[slot], value);
+            histogramMaxs[slot] = Math.max(histogramMaxs[slot], value);
+        }
+        histogramCounts[slot]++;
+        histogramSums[slot] += value;
+        histogramBuckets[slot * BUCKET_COUNT + bucketOf(value)]++;
+        dirty = true;
+    }
+
+    /**
+     * Reports everything aggregated since the previous flush and resets the values.
+     * Keys updated since the previous flush are kept, so steady-state updates don't build keys;
+     * keys that stayed idle for a whole interval are evicted to make room for new ones.
+     */
+    void flush() {
+        if (!dirty || !ActivationController.getInstance().isActive()) {
+            return;
+        }
+        ReporterBackend backend = ReporterBackends.get();
+        int keptCounters = 0;
+        for (int i = 0; i < counterCount; i++) {
+            if (!counterTouched[i]) {
+                continue;
+            }
+            Map<String, Object> attributes = new HashMap<String, Object>();
+            attributes.put("value", counterValues[i]);
+            if (counterDimensions[i] != null) {
+                attributes.put("dimensions", counterDimensions[i]);
+            }
+            backend.reportEvent(counterNames[i], attributes);
+            moveCounter(i, keptCounters++);
+        }
+        Arrays.fill(counterNames, keptCounters, counterCount, null);
+        Arrays.fill(counterDimensions, keptCounters, counterCount, null);
+        Arrays.fill(counterValues, 0, counterCount, 0);
+        Arrays.fill(counterTouched, 0, counterCount, false);
+        counterCount = keptCounters;
+
+        int keptHistograms = 0;
+        for (int i = 0; i < histogramCount; i++) {
+            if (histogramCounts[i] == 0) {
+                continue;
+            }
+            backend.reportEvent(histogramNames[i], histogramToMap(i));
+            moveHistogram(i, keptHistograms++);
+        }
+        Arrays.fill(histogramNames, keptHistograms, histogramCount, null);
+        Arrays.fill(histogramCounts, 0, histogramCount, 0);
+        Arrays.fill(histogramSums, 0, histogramCount, 0);
+        Arrays.fill(histogramBuckets, 0, histogramCount * BUCKET_COUNT, 0);
+        histogramCount = keptHistograms;
+
+        if (pendingOverflow > 0) {
+            Map<String, Object> overflow = new HashMap<String, Object>();
+            overflow.put("dropped", pendingOverflow);
+            overflow.put("maxKeys", maxKeys);
+            backend.reportEvent(OVERFLOW_EVENT_NAME, overflow);
+            pendingOverflow = 0;
+        }
+        counterIndex.clear();
+        histogramIndex.clear();
+        reindex();
+        keyCount = counterCount + histogramCount;
+        dirty = false;
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put("keys", (double) keyCount);
+        stats.put("dropped", (double) overflowCount);
+        return stats;
+    }
+
+    private boolean hasRoomForKey() {
+        if (counterCount + histogramCount < maxKeys) {
+            return true;
+        }
+        pendingOverflow++;
+        overflowCount++;
+        dirty = true;
+        return false;
+    }
+
+    private void moveCounter(int from, int to) {
+        counterHashes[to] = counterHashes[from];
+        counterNames[to] = counterNames[from];
+        counterDimensions[to] = counterDimensions[from];
+    }
+
+    private void moveHistogram(int from, int to) {
+        histogramHashes[to] = histogramHashes[from];
+        histogramNames[to] = histogramNames[from];
+    }
+
+    private Map<String, Object> histogramToMap(int index) {
+        long count = histogramCounts[index];
+        double min = histogramMins[index];
+        double max = histogramMaxs[index];
+        int offset = index * BUCKET_COUNT;
+        Map<String, Object> histogram = new HashMap<String, Object>();
+        histogram.put("count", count);
+        histogram.put("sum", histogramSums[index]);
+        histogram.put("min", min);
+        histogram.put("max", max);
+        histogram.put("p50", percentile(histogramBuckets, offset, count, min, max, 0.5));
+        histogram.put("p90", percentile(histogramBuckets, offset, count, min, max, 0.9));
+        histogram.put("p99", percentile(histogramBuckets, offset, count, min, max, 0.99));
+        return histogram;
+    }
+
+    /**
+     * Estimates a quantile by interpolating inside the bucket that holds it, clamped to the exact min and max.
+     */
+    static double percentile(long[] buckets, int offset, long count, double min, double max, double quantile) {
+        double rank = quantile * count;
+        long seen = 0;
+        for (int b = 0; b < BUCKET_COUNT; b++) {
+            long inBucket = buckets[offset + b];
+            if (inBucket == 0) {
+                continue;
+            }
+            if (seen + inBucket >= rank) {
+                double lower = Math.max(min, bucketLowerBound(b));
+                double upper = Math.min(max, bucketLowerBound(b + 1));
+                if (upper < lower) {
+                    return lower;
+                }
+                return lower + (upper - lower) * ((rank - seen) / inBucket);
+            }
+            seen += inBucket;
+        }
+        return max;
+    }
+
+    static int bucketOf(double value) {
+        if (!(value >= MIN_BUCKET_VALUE)) {
+            return 0;
+        }
+        if (value >= MAX_BUCKET_VALUE) {
+            return BUCKET_COUNT - 1;
+        }
+        int bucket = 1 + (int) ((Math.log(value) / Math.log(2) - MIN_EXPONENT) * SUBBUCKETS);
+        return Math.min(Math.max(bucket, 1), BUCKET_COUNT - 2);
+    }
+
+    private static double bucketLowerBound(int bucket) {
+        if (bucket == 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (bucket == BUCKET_COUNT) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.pow(2, MIN_EXPONENT + (bucket - 1) / (double) SUBBUCKETS);
+    }
+
+    /**
+     * Hashes the name and dimensions without building a key; the dimension order doesn't matter.
+     * Nested dimension values are rare and hashed through their string form.
+     */
+    static long keyHash(String name, ReadableMap dimensions) {
+        long dimensionsHash = 0;
+        if (dimensions != null) {
+            ReadableMapKeySetIterator iterator = dimensions.keySetIterator();
+            while (iterator.hasNextKey()) {
+                String dimension = iterator.nextKey();
+                dimensionsHash += mix(hash(dimension) * 31 + valueHash(dimensions, dimension));
+            }
+        }
+        long hash = mix(hash(name) ^ dimensionsHash * 0x9E3779B97F4A7C15L);
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static long valueHash(ReadableMap dimensions, String dimension) {
+        switch (dimensions.getType(dimension)) {
+            case Boolean:
+                return dimensions.getBoolean(dimension) ? 1231 : 1237;
+            case Number:
+                return mix(Double.doubleToLongBits(dimensions.getDouble(dimension)));
+            case String:
+                return hash(dimensions.getString(dimension));
+            case Map:
+                return hash(String.valueOf(dimensions.getMap(dimension).toHashMap()));
+            case Array:
+                return hash(String.valueOf(dimensions.getArray(dimension).toArrayList()));
+            default:
+                return 0;
+        }
+    }
+
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Open addressing map from a non-zero key hash to its slot, sized for the key limit.
+     */
+    private static final class SlotIndex {
+
+        private final long[] hashes;
+        private final int[] slots;
+        private final int mask;
+
+        SlotIndex(int maxKeys) {
+            int capacity = Integer.highestOneBit(Math.max(maxKeys, 1)) * 4;
+            hashes = new long[capacity];
+            slots = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        int get(long hash) {
+            for (int i = (int) hash & mask; hashes[i] != 0; i = (i + 1) & mask) {
+                if (hashes[i] == hash) {
+                    return slots[i];
+                }
+            }
+            return -1;
+        }
+
+        void put(long hash, int slot) {
+            int i = (int) hash & mask;
+            while (hashes[i] != 0 && hashes[i] != hash) {
+                i = (i + 1) & mask;
+            }
+            hashes[i] = hash;
+            slots[i] = slot;
+        }
+
+        void clear() {
+            Arrays.fill(hashes, 0);
+        }
+    }
+}
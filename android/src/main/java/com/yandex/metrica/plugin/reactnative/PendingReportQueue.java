@@ -0,0 +1,134 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+
+/**
+ * Holds reports made before AppMetrica is activated and replays them in order afterwards.
+ * Entries are stored as strings in parallel arrays, attributes and user profiles are kept as JSON.
+ * Only accessed from the {@link ReportDispatcher} thread.
+ */
+final class PendingReportQueue {
+
+    static final byte TYPE_EVENT = 1;
+    static final byte TYPE_APP_OPEN = 2;
+    static final byte TYPE_REFERRAL_URL = 3;
+    static final byte TYPE_USER_PROFILE_ID = 4;
+    static final byte TYPE_USER_PROFILE = 5;
+
+    private static final String TAG = "PendingReportQueue";
+    private static final int MAX_ENTRIES = 512;
+    private static final int MAX_CHARS = 128 * 1024;
+
+    private static final PendingReportQueue INSTANCE = new PendingReportQueue();
+
+    private final byte[] types = new byte[MAX_ENTRIES];
+    private final String[] values = new String[MAX_ENTRIES];
+    private final String[] payloads = new String[MAX_ENTRIES];
+    private int size = 0;
+    private int chars = 0;
+
+    private volatile long queuedCount = 0;
+    private volatile long replayedCount = 0;
+    private volatile long droppedCount = 0;
+
+    private PendingReportQueue() {
+    }
+
+    static PendingReportQueue getInstance() {
+        return INSTANCE;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void offer(byte type, String value, String payload) {
+        int entryChars = length(value) + length(payload);
+        if (size == MAX_ENTRIES || chars + entryChars > MAX_CHARS) {
+            droppedCount++;
+            return;
+        }
+        types[size] = type;
+        values[size] = value;
+        payloads[size] = payload;
+        size++;
+        chars += entryChars;
+        queuedCount++;
+    }
+
+    void replay() {
+        for (int i = 0; i < size; i++) {
+            String value = values[i];
+            String payload = payloads[i];
+            switch (types[i]) {
+                case TYPE_EVENT:
+                    if (payload == null) {
+                        ReporterBackends.get().reportEvent(value);
+                    } else {
+                        ReporterBackends.get().reportEvent(value, payload);
+                    }
+                    break;
+                case TYPE_APP_OPEN:
+                    ReporterBackends.get().reportAppOpen(value);
+                    break;
+                case TYPE_REFERRAL_URL:
+                    ReporterBackends.get().reportReferralUrl(value);
+                    break;
+                case TYPE_USER_PROFILE_ID:
+                    ReporterBackends.get().setUserProfileID(value);
+                    break;
+                case TYPE_USER_PROFILE:
+                    ReporterBackends.get().setUserProfileID(value);
+                    replayUserProfile(payload);
+                    break;
+            }
+            values[i] = null;
+            payloads[i] = null;
+        }
+        replayedCount += size;
+        size = 0;
+        chars = 0;
+    }
+
+    private static void replayUserProfile(String payload) {
+        try {
+            Map<String, Object> values = UserProfileDiffer.toValues(Utils.toReadableMap(new JSONObject(payload)));
+            ReporterBackends.get().reportUserProfile(UserProfileDiffer.toUserProfile(values));
+        } catch (JSONException e) {
+            Log.w(TAG, "User profile dropped: " + e.getMessage());
+        }
+    }
+
+    long getQueuedCount() {
+        return queuedCount;
+    }
+
+    long getReplayedCount() {
+        return replayedCount;
+    }
+
+    long getDroppedCount() {
+        return droppedCount;
+    }
+
+    int getPendingCount() {
+        return size;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Call counts and latency histograms of the plugin itself.
+ * Each timer keeps a few stripes picked by thread, each on cache lines of its own, so threads
+ * recording the same timer rarely write to the same line. Recording doesn't allocate, and when
+ * disabled {@link #start()} returns 0 and {@link #record(Timer, long)} returns immediately.
+ */
+final class PluginStats {
+
+    enum Timer {
+        ACTIVATE("activate"),
+        GET_PENDING_REPORT_STATS("getPendingReportStats"),
+        GET_PLUGIN_STATS("getPluginStats"),
+        GET_LIBRARY_API_LEVEL("getLibraryApiLevel"),
+        GET_LIBRARY_VERSION("getLibraryVersion"),
+        PAUSE_SESSION("pauseSession"),
+        REPORT_APP_OPEN("reportAppOpen"),
+        REPORT_ERROR("reportError"),
+        REPORT_UNHANDLED_EXCEPTION("reportUnhandledException"),
+        REPORT_EVENT("reportEvent"),
+        REPORT_EVENT_JSON("reportEventJson"),
+        REPORT_EVENTS("reportEvents"),
+        REGISTER_EVENT_SCHEMA("registerEventSchema"),
+        REPORT_EVENT_BY_ID("reportEventById"),
+        INCREMENT_COUNTER("incrementCounter"),
+        RECORD_VALUE("recordValue"),
+        REPORT_REFERRAL_URL("reportReferralUrl"),
+        REQUEST_APPMETRICA_DEVICE_ID("requestAppMetricaDeviceID"),
+        GET_STARTUP_PARAMS("getStartupParams"),
+        GET_INSTALL_REFERRER("getInstallReferrer"),
+        RESUME_SESSION("resumeSession"),
+        SEND_EVENTS_BUFFER("sendEventsBuffer"),
+        SET_LOCATION("setLocation"),
+        SET_LOCATION_TRACKING("setLocationTracking"),
+        SET_STATISTICS_SENDING("setStatisticsSending"),
+        SET_USER_PROFILE_ID("setUserProfileID"),
+        REPORT_USER_PROFILE("reportUserProfile"),
+        START_SPAN("startSpan"),
+        END_SPAN("endSpan"),
+        ACTIVATE_REPORTER("activateReporter"),
+        REPORT_REPORTER_EVENT("reportReporterEvent"),
+        REPORT_REPORTER_EVENTS("reportReporterEvents"),
+        PAUSE_REPORTER_SESSION("pauseReporterSession"),
+        RESUME_REPORTER_SESSION("resumeReporterSession"),
+        SEND_REPORTER_EVENTS_BUFFER("sendReporterEventsBuffer"),
+        // Work done off the calling thread
+        SDK_ACTIVATION("sdkActivation"),
+        CONFIG_CONVERSION("configConversion"),
+        ATTRIBUTES_CONVERSION("attributesConversion"),
+        PROFILE_BUILDING("profileBuilding");
+
+        final String label;
+
+        Timer(String label) {
+            this.label = label;
+        }
+    }
+
+    static final String SUMMARY_EVENT_NAME = "appmetrica_plugin_stats";
+
+    private static final Timer[] TIMERS = Timer.values();
+    private static final int STRIPES = 4;
+    private static final long[] BUCKET_BOUNDS_MICROS = {10, 50, 100, 500, 1000, 5000, 10000, 50000};
+    private static final int BUCKET_COUNT = BUCKET_BOUNDS_MICROS.length + 1;
+    // A stripe holds the count, the total and the buckets, followed by at least a 64-byte cache
+    // line of padding, so two stripes never share a line wherever the array starts
+    private static final int COUNT_OFFSET = 0;
+    private static final int MICROS_OFFSET = 1;
+    private static final int BUCKETS_OFFSET = 2;
+    private static final int STRIPE_SIZE = 24;
+
+    private static final AtomicLongArray stripes = new AtomicLongArray(TIMERS.length * STRIPES * STRIPE_SIZE);
+
+    private static volatile boolean enabled = false;
+
+    private PluginStats() {
+    }
+
+    static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    static void record(Timer timer, long startNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        long micros = (System.nanoTime() - startNanos) / 1000;
+        int stripe = stripeOf(timer, (int) (Thread.currentThread().getId() & (STRIPES - 1)));
+        stripes.incrementAndGet(stripe + COUNT_OFFSET);
+        stripes.addAndGet(stripe + MICROS_OFFSET, micros);
+        stripes.incrementAndGet(stripe + BUCKETS_OFFSET + bucketOf(micros));
+    }
+
+    /**
+     * @return call counts, total time and latency buckets of every timer that has recorded anything
+     */
+    static Map<String, Object> snapshot() {
+        Map<String, Object> timers = new HashMap<String, Object>();
+        for (Timer timer : TIMERS) {
+            long count = 0;
+            long micros = 0;
+            for (int s = 0; s < STRIPES; s++) {
+                count += stripes.get(stripeOf(timer, s) + COUNT_OFFSET);
+                micros += stripes.get(stripeOf(timer, s) + MICROS_OFFSET);
+            }
+            if (count == 0) {
+                continue;
+            }
+            Map<String, Object> latency = new HashMap<String, Object>();
+            for (int b = 0; b < BUCKET_COUNT; b++) {
+                long bucketCount = 0;
+                for (int s = 0; s < STRIPES; s++) {
+                    bucketCount += stripes.get(stripeOf(timer, s) + BUCKETS_OFFSET + b);
+                }
+                if (bucketCount != 0) {
+                    String label = b < BUCKET_BOUNDS_MICROS.length
+                        ? "<=" + BUCKET_BOUNDS_MICROS[b] + "us"
+                        : ">" + BUCKET_BOUNDS_MICROS[b - 1] + "us";
+                    latency.put(label, (double) bucketCount);
+                }
+            }
+            Map<String, Object> stats = new HashMap<String, Object>();
+            stats.put("calls", (double) count);
+            stats.put("totalMicros", (double) micros);
+            stats.put("latency", latency);
+            timers.put(timer.label, stats);
+        }
+        return timers;
+    }
+
+    private static int stripeOf(Timer timer, int stripe) {
+        return (timer.ordinal() * STRIPES + stripe) * STRIPE_SIZE;
+    }
+
+    private static int bucketOf(long micros) {
+        for (int b = 0; b < BUCKET_BOUNDS_MICROS.length; b++) {
+            if (micros <= BUCKET_BOUNDS_MICROS[b]) {
+                return b;
+            }
+        }
+        return BUCKET_BOUNDS_MICROS.length;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Small key-value store for plugin state that has to survive process restarts.
+ */
+final class PluginStorage {
+
+    private static final String PREFERENCES_NAME = "io.appmetrica.analytics.plugin.reactnative";
+    private static final String KEY_ACTIVATION_CONFIG = "activation_config";
+    private static final String KEY_INSTALL_REFERRER = "install_referrer";
+
+    private final SharedPreferences preferences;
+
+    PluginStorage(Context context) {
+        preferences = context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    String getActivationConfig() {
+        return preferences.getString(KEY_ACTIVATION_CONFIG, null);
+    }
+
+    void putActivationConfig(String json) {
+        preferences.edit().putString(KEY_ACTIVATION_CONFIG, json).apply();
+    }
+
+    String getInstallReferrer() {
+        return preferences.getString(KEY_INSTALL_REFERRER, null);
+    }
+
+    void putInstallReferrer(String json) {
+        preferences.edit().putString(KEY_INSTALL_REFERRER, json).apply();
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs AppMetrica SDK calls on a dedicated background thread, so slow SDK calls
+ * don't hold the React native modules thread.
+ * The worker is a plain executor thread rather than a Looper, so the plugin also runs
+ * on a JVM for load tests.
+ *
+ * <p>Reports go through a bounded ring buffer and are subject to the overflow policy.
+ * Control tasks (activation, config, sessions, flushes and calls that settle a Promise) go
+ * through an unbounded queue and are never dropped. A control task still runs after the
+ * reports dispatched before it.
+ */
+final class ReportDispatcher {
+
+    enum OverflowPolicy {
+        DROP_OLDEST,
+        DROP_NEWEST,
+        BLOCK
+    }
+
+    private static final class ControlTask {
+
+        final Runnable task;
+        // Reports offered before this task, it runs once they are all polled
+        final long reportPosition;
+
+        ControlTask(Runnable task, long reportPosition) {
+            this.task = task;
+            this.reportPosition = reportPosition;
+        }
+    }
+
+    private static final String TAG = "AppMetricaDispatcher";
+    private static final int CAPACITY = 1024;
+    private static final long BLOCK_PARK_NANOS = 100000L;
+
+    private static volatile ReportDispatcher instance;
+
+    private final EventRingBuffer<Runnable> buffer;
+    private final ConcurrentLinkedQueue<ControlTask> controlTasks = new ConcurrentLinkedQueue<ControlTask>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final ScheduledExecutorService executor;
+    private volatile Thread workerThread;
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drainScheduled.set(false);
+            drain();
+        }
+    };
+
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+    ReportDispatcher(int capacity) {
+        buffer = new EventRingBuffer<Runnable>(capacity);
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "AppMetricaReactNative");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                workerThread = thread;
+                return thread;
+            }
+        });
+    }
+
+    static ReportDispatcher getInstance() {
+        ReportDispatcher dispatcher = instance;
+        if (dispatcher == null) {
+            synchronized (ReportDispatcher.class) {
+                dispatcher = instance;
+                if (dispatcher == null) {
+                    dispatcher = new ReportDispatcher(CAPACITY);
+                    instance = dispatcher;
+                }
+            }
+        }
+        return dispatcher;
+    }
+
+    void setOverflowPolicy(OverflowPolicy policy) {
+        overflowPolicy = policy;
+    }
+
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    int getPendingCount() {
+        return buffer.size() + controlTasks.size();
+    }
+
+    /**
+     * Queues a report, which may be dropped by the overflow policy when the buffer is full.
+     */
+    void dispatch(Runnable task) {
+        if (isWorkerThread()) {
+            runSafely(task);
+            return;
+        }
+        while (!buffer.offer(task)) {
+            OverflowPolicy policy = overflowPolicy;
+            // Parking the main thread could freeze the UI, static entry points may be called on it
+            if (policy == OverflowPolicy.BLOCK && isMainThread()) {
+                policy = OverflowPolicy.DROP_OLDEST;
+            }
+            switch (policy) {
+                case DROP_NEWEST:
+                    droppedCount.incrementAndGet();
+                    return;
+                case DROP_OLDEST:
+                    if (buffer.poll() != null) {
+                        droppedCount.incrementAndGet();
+                    }
+                    break;
+                case BLOCK:
+                    scheduleDrain();
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                    break;
+            }
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * Queues a task that must not be lost, it is never dropped and never blocks the caller.
+     */
+    void dispatchControl(Runnable task) {
+        if (isWorkerThread()) {
+            runSafely(task);
+            return;
+        }
+        controlTasks.offer(new ControlTask(task, buffer.tailPosition()));
+        scheduleDrain();
+    }
+
+    ScheduledFuture<?> schedule(final Runnable task, long delayMillis) {
+        return executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runSafely(task);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void flush() {
+        executor.execute(drainTask);
+    }
+
+    private boolean isWorkerThread() {
+        return Thread.currentThread() == workerThread;
+    }
+
+    private static boolean isMainThread() {
+        Looper mainLooper = Looper.getMainLooper();
+        return mainLooper != null && mainLooper.getThread() == Thread.currentThread();
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            executor.execute(drainTask);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            ControlTask controlTask = controlTasks.peek();
+            if (controlTask != null && controlTask.reportPosition <= buffer.headPosition()) {
+                controlTasks.poll();
+                runSafely(controlTask.task);
+                continue;
+            }
+            Runnable task = buffer.poll();
+            if (task == null) {
+                // A report offered before the control task is not published yet,
+                // its producer schedules another drain
+                return;
+            }
+            runSafely(task);
+        }
+    }
+
+    private static void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable error) {
+            Log.e(TAG, "Failed to report to AppMetrica", error);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.Intent;
+import android.location.Location;
+
+import io.appmetrica.analytics.AppMetricaConfig;
+import io.appmetrica.analytics.IReporter;
+import io.appmetrica.analytics.ReporterConfig;
+import io.appmetrica.analytics.StartupParamsCallback;
+import io.appmetrica.analytics.profile.UserProfile;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The SDK calls made by the plugin. {@link AppMetricaReporterBackend} is the default,
+ * the benchmark load test installs one that keeps everything in memory.
+ *
+ * @see ReporterBackends
+ */
+interface ReporterBackend {
+
+    void activate(Context context, AppMetricaConfig config);
+
+    void enableActivityAutoTracking(Application application);
+
+    void reportEvent(String eventName);
+
+    void reportEvent(String eventName, Map<String, Object> attributes);
+
+    void reportEvent(String eventName, String json);
+
+    void reportError(String message, Throwable error);
+
+    void reportError(String groupIdentifier, String message, Throwable error);
+
+    void reportUnhandledException(Throwable exception);
+
+    void reportUserProfile(UserProfile userProfile);
+
+    void setUserProfileID(String userProfileID);
+
+    void reportAppOpen(String deeplink);
+
+    void reportAppOpen(Activity activity);
+
+    void reportAppOpen(Intent intent);
+
+    void reportReferralUrl(String referralUrl);
+
+    void pauseSession(Activity activity);
+
+    void resumeSession(Activity activity);
+
+    void setLocation(Location location);
+
+    void setLocationTracking(boolean enabled);
+
+    void setDataSendingEnabled(boolean enabled);
+
+    void requestStartupParams(Context context, StartupParamsCallback callback, List<String> params);
+
+    void sendEventsBuffer();
+
+    void activateReporter(Context context, ReporterConfig config);
+
+    IReporter getReporter(Context context, String apiKey);
+}
@@ -0,0 +1,29 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+/**
+ * Holds the {@link ReporterBackend} used by the plugin. Replace it before the module is
+ * created to run the plugin without the AppMetrica SDK.
+ */
+final class ReporterBackends {
+
+    private static volatile ReporterBackend backend = new AppMetricaReporterBackend();
+
+    private ReporterBackends() {
+    }
+
+    static ReporterBackend get() {
+        return backend;
+    }
+
+    static void set(ReporterBackend reporterBackend) {
+        backend = reporterBackend == null ? new AppMetricaReporterBackend() : reporterBackend;
+    }
+}
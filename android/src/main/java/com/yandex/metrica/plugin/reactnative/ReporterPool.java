@@ -0,0 +1,55 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import android.content.Context;
+
+import io.appmetrica.analytics.IReporter;
+import io.appmetrica.analytics.ReporterConfig;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link IReporter} instances for API keys other than the main one. A lookup is a lock-free
+ * map read, the SDK is asked for a reporter once per key.
+ */
+final class ReporterPool {
+
+    private final ConcurrentHashMap<String, IReporter> reporters = new ConcurrentHashMap<String, IReporter>();
+    private final Context context;
+
+    ReporterPool(Context context) {
+        this.context = context;
+    }
+
+    void activate(String apiKey, ReporterConfig config) {
+        ReporterBackend backend = ReporterBackends.get();
+        backend.activateReporter(context, config);
+        reporters.put(apiKey, backend.getReporter(context, apiKey));
+    }
+
+    /**
+     * Reporters of keys that were not activated with {@link #activate} use the default config.
+     */
+    IReporter get(String apiKey) {
+        IReporter reporter = reporters.get(apiKey);
+        if (reporter == null) {
+            reporter = ReporterBackends.get().getReporter(context, apiKey);
+            IReporter existing = reporters.putIfAbsent(apiKey, reporter);
+            if (existing != null) {
+                reporter = existing;
+            }
+        }
+        return reporter;
+    }
+
+    int size() {
+        return reporters.size();
+    }
+}
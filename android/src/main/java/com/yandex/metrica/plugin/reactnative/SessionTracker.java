@@ -0,0 +1,202 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pauses and resumes the AppMetrica session from activity lifecycle callbacks, so JS doesn't
+ * have to on every AppState change. The pause is put off for a moment after the last activity
+ * pauses, so switching between activities doesn't end the session.
+ * Callbacks are always observed to know the resumed activity, sessions are only driven when
+ * enabled with the nativeSessionTracking config key. Session state is only accessed from the
+ * {@link ReportDispatcher} thread. As the tracker lives as long as the process, activities are
+ * only weakly referenced.
+ */
+final class SessionTracker implements Application.ActivityLifecycleCallbacks {
+
+    static final long DEFAULT_PAUSE_DELAY_MILLIS = 700L;
+
+    private static final SessionTracker INSTANCE = new SessionTracker();
+
+    private final ReportDispatcher dispatcher = ReportDispatcher.getInstance();
+    private final AtomicBoolean registered = new AtomicBoolean(false);
+    private volatile boolean enabled = false;
+    private volatile long pauseDelayMillis = DEFAULT_PAUSE_DELAY_MILLIS;
+    private volatile WeakReference<Activity> lastActivity = new WeakReference<Activity>(null);
+
+    private WeakReference<Activity> resumedActivity = new WeakReference<Activity>(null);
+    private boolean sessionResumed = false;
+    private boolean pausePending = false;
+    private int pauseGeneration = 0;
+    private volatile long resumedCount = 0;
+    private volatile long pausedCount = 0;
+    private volatile long debouncedCount = 0;
+
+    private SessionTracker() {
+    }
+
+    static SessionTracker getInstance() {
+        return INSTANCE;
+    }
+
+    void register(Application application) {
+        if (registered.compareAndSet(false, true)) {
+            application.registerActivityLifecycleCallbacks(this);
+        }
+    }
+
+    void setPolicy(boolean enabled, long pauseDelayMillis) {
+        this.enabled = enabled;
+        this.pauseDelayMillis = pauseDelayMillis;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the last resumed activity, for session calls made while no activity is current
+     */
+    Activity getLastActivity() {
+        return lastActivity.get();
+    }
+
+    /**
+     * Resumes the session for an activity resumed before AppMetrica was activated.
+     */
+    void onActivated() {
+        dispatcher.dispatchControl(new Runnable() {
+            @Override
+            public void run() {
+                Activity activity = resumedActivity.get();
+                if (activity != null) {
+                    onResumed(activity);
+                }
+            }
+        });
+    }
+
+    /**
+     * For activities resumed before the callbacks were registered, React Native reports the
+     * current one to lifecycle listeners when they are added.
+     */
+    void onHostResume(final Activity activity) {
+        if (activity != null) {
+            onActivityResumed(activity);
+        }
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put("enabled", enabled);
+        stats.put("resumed", (double) resumedCount);
+        stats.put("paused", (double) pausedCount);
+        stats.put("debounced", (double) debouncedCount);
+        return stats;
+    }
+
+    @Override
+    public void onActivityResumed(final Activity activity) {
+        lastActivity = new WeakReference<Activity>(activity);
+        dispatcher.dispatchControl(new Runnable() {
+            @Override
+            public void run() {
+                onResumed(activity);
+            }
+        });
+    }
+
+    @Override
+    public void onActivityPaused(final Activity activity) {
+        dispatcher.dispatchControl(new Runnable() {
+            @Override
+            public void run() {
+                onPaused(activity);
+            }
+        });
+    }
+
+    @Override
+    public void onActivityDestroyed(final Activity activity) {
+        if (lastActivity.get() == activity) {
+            lastActivity = new WeakReference<Activity>(null);
+        }
+        dispatcher.dispatchControl(new Runnable() {
+            @Override
+            public void run() {
+                if (resumedActivity.get() == activity) {
+                    resumedActivity.clear();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+
+    private void onResumed(Activity activity) {
+        resumedActivity = new WeakReference<Activity>(activity);
+        if (pausePending) {
+            pausePending = false;
+            pauseGeneration++;
+            debouncedCount++;
+        }
+        if (enabled && !sessionResumed && ActivationController.getInstance().isActive()) {
+            ReporterBackends.get().resumeSession(activity);
+            sessionResumed = true;
+            resumedCount++;
+        }
+    }
+
+    private void onPaused(final Activity activity) {
+        if (resumedActivity.get() != activity) {
+            return;
+        }
+        resumedActivity.clear();
+        if (!sessionResumed || pausePending) {
+            return;
+        }
+        pausePending = true;
+        final int generation = ++pauseGeneration;
+        final WeakReference<Activity> pausedActivity = new WeakReference<Activity>(activity);
+        dispatcher.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!pausePending || generation != pauseGeneration) {
+                    return;
+                }
+                pausePending = false;
+                sessionResumed = false;
+                pausedCount++;
+                ReporterBackends.get().pauseSession(pausedActivity.get());
+            }
+        }, pauseDelayMillis);
+    }
+}
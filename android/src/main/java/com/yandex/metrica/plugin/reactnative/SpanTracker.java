@@ -0,0 +1,255 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import android.os.Build;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Timing spans started from JS or native code. Open spans live in an open-addressing table
+ * keyed by int ID, finished spans are reported in batches as one event. The number of open
+ * spans is capped, so spans that are never ended can't grow the table.
+ */
+final class SpanTracker {
+
+    static final String SPANS_EVENT_NAME = "appmetrica_plugin_spans";
+    static final int NO_SPAN = -1;
+
+    private static final int DEFAULT_MAX_OPEN_SPANS = 256;
+    private static final int BATCH_SIZE = 50;
+    private static final int MAX_FINISHED_SPANS = 1000;
+    private static final long FLUSH_DELAY_MILLIS = 30000L;
+    private static final int EMPTY = 0;
+
+    private static volatile SpanTracker instance;
+
+    private final ReportDispatcher dispatcher = ReportDispatcher.getInstance();
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private int maxOpenSpans = DEFAULT_MAX_OPEN_SPANS;
+    private int[] ids;
+    private long[] startNanos;
+    private String[] names;
+    private Object[] attributes;
+    private int mask;
+    private int shift;
+    private int openCount = 0;
+    private int nextId = 1;
+    private long rejectedCount = 0;
+    private long droppedCount = 0;
+    private List<Map<String, Object>> finished = new ArrayList<Map<String, Object>>();
+    private boolean flushScheduled = false;
+
+    private SpanTracker() {
+        allocate(DEFAULT_MAX_OPEN_SPANS);
+    }
+
+    static SpanTracker getInstance() {
+        SpanTracker tracker = instance;
+        if (tracker == null) {
+            synchronized (SpanTracker.class) {
+                tracker = instance;
+                if (tracker == null) {
+                    tracker = new SpanTracker();
+                    instance = tracker;
+                }
+            }
+        }
+        return tracker;
+    }
+
+    synchronized void setMaxOpenSpans(int value) {
+        if (value <= 0 || value == maxOpenSpans) {
+            return;
+        }
+        int[] oldIds = ids;
+        long[] oldStartNanos = startNanos;
+        String[] oldNames = names;
+        Object[] oldAttributes = attributes;
+        maxOpenSpans = value;
+        allocate(value);
+        openCount = 0;
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != EMPTY && openCount < maxOpenSpans) {
+                insert(oldIds[i], oldStartNanos[i], oldNames[i], oldAttributes[i]);
+            }
+        }
+    }
+
+    /**
+     * @return span ID, or {@link #NO_SPAN} if too many spans are open
+     */
+    int start(String name, Map<String, Object> spanAttributes) {
+        long now = now();
+        synchronized (this) {
+            if (openCount >= maxOpenSpans) {
+                rejectedCount++;
+                return NO_SPAN;
+            }
+            int id = nextId;
+            nextId = id == Integer.MAX_VALUE ? 1 : id + 1;
+            insert(id, now, name, spanAttributes);
+            return id;
+        }
+    }
+
+    /**
+     * @return false if there is no open span with the ID
+     */
+    boolean end(int id) {
+        long now = now();
+        Map<String, Object> span;
+        boolean flushNow;
+        synchronized (this) {
+            int slot = find(id);
+            if (slot < 0) {
+                return false;
+            }
+            span = new HashMap<String, Object>();
+            span.put("name", names[slot]);
+            span.put("durationMs", (now - startNanos[slot]) / 1e6);
+            if (attributes[slot] != null) {
+                span.put("attributes", attributes[slot]);
+            }
+            remove(slot);
+
+            if (finished.size() >= MAX_FINISHED_SPANS) {
+                finished.remove(0);
+                droppedCount++;
+            }
+            finished.add(span);
+            flushNow = finished.size() >= BATCH_SIZE;
+            if (!flushNow && flushScheduled) {
+                return true;
+            }
+            flushScheduled = true;
+        }
+        if (flushNow) {
+            dispatcher.dispatchControl(flushTask);
+        } else {
+            dispatcher.schedule(flushTask, FLUSH_DELAY_MILLIS);
+        }
+        return true;
+    }
+
+    /**
+     * Reports finished spans, or tries again later if AppMetrica is not active yet.
+     * Must be called on the {@link ReportDispatcher} thread.
+     */
+    void flush() {
+        boolean active = ActivationController.getInstance().isActive();
+        List<Map<String, Object>> spans;
+        synchronized (this) {
+            if (finished.isEmpty()) {
+                flushScheduled = false;
+                return;
+            }
+            if (!active) {
+                flushScheduled = true;
+                dispatcher.schedule(flushTask, FLUSH_DELAY_MILLIS);
+                return;
+            }
+            flushScheduled = false;
+            spans = finished;
+            finished = new ArrayList<Map<String, Object>>();
+        }
+        Map<String, Object> event = new HashMap<String, Object>();
+        event.put("spans", spans);
+        ReporterBackends.get().reportEvent(SPANS_EVENT_NAME, event);
+    }
+
+    synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put("open", (double) openCount);
+        stats.put("pending", (double) finished.size());
+        stats.put("rejected", (double) rejectedCount);
+        stats.put("dropped", (double) droppedCount);
+        return stats;
+    }
+
+    private void allocate(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1;
+        ids = new int[size];
+        startNanos = new long[size];
+        names = new String[size];
+        attributes = new Object[size];
+        mask = size - 1;
+        shift = 32 - Integer.numberOfTrailingZeros(size);
+    }
+
+    private int slotOf(int id) {
+        return (id * 0x9E3779B9) >>> shift;
+    }
+
+    private void insert(int id, long start, String name, Object spanAttributes) {
+        int slot = slotOf(id);
+        while (ids[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        ids[slot] = id;
+        startNanos[slot] = start;
+        names[slot] = name;
+        attributes[slot] = spanAttributes;
+        openCount++;
+    }
+
+    private int find(int id) {
+        if (id <= 0) {
+            return -1;
+        }
+        int slot = slotOf(id);
+        while (ids[slot] != EMPTY) {
+            if (ids[slot] == id) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Backward shift deletion, so lookups never need tombstones.
+     */
+    private void remove(int slot) {
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (ids[next] != EMPTY) {
+            int home = slotOf(ids[next]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                ids[hole] = ids[next];
+                startNanos[hole] = startNanos[next];
+                names[hole] = names[next];
+                attributes[hole] = attributes[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        ids[hole] = EMPTY;
+        names[hole] = null;
+        attributes[hole] = null;
+        openCount--;
+    }
+
+    private static long now() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return SystemClock.elapsedRealtimeNanos();
+        }
+        return SystemClock.elapsedRealtime() * 1000000L;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import android.content.Context;
+
+import io.appmetrica.analytics.StartupParamsCallback;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Caches deviceId, deviceIdHash and uuid after the first successful request.
+ * Concurrent requests share a single AppMetrica.requestStartupParams call, which fails with
+ * TIMEOUT if the SDK doesn't call back in time.
+ */
+final class StartupParamsCache {
+
+    interface Listener {
+        void onResult(StartupParams params, String error);
+    }
+
+    static final class StartupParams {
+
+        final String deviceId;
+        final String deviceIdHash;
+        final String uuid;
+
+        StartupParams(String deviceId, String deviceIdHash, String uuid) {
+            this.deviceId = deviceId;
+            this.deviceIdHash = deviceIdHash;
+            this.uuid = uuid;
+        }
+    }
+
+    private static final List<String> PARAMS = Arrays.asList(
+        StartupParamsCallback.APPMETRICA_DEVICE_ID,
+        StartupParamsCallback.APPMETRICA_DEVICE_ID_HASH,
+        StartupParamsCallback.APPMETRICA_UUID
+    );
+
+    private static final long REQUEST_TIMEOUT_MILLIS = 30000L;
+
+    private static final StartupParamsCache INSTANCE = new StartupParamsCache();
+
+    private final ReportDispatcher dispatcher = ReportDispatcher.getInstance();
+    private final List<Listener> waitingListeners = new ArrayList<Listener>();
+    private boolean requestInFlight = false;
+    // Tells the timeout of a request from the ones of the requests after it
+    private int requestGeneration = 0;
+    private volatile StartupParams cachedParams;
+
+    private final StartupParamsCallback callback = new StartupParamsCallback() {
+        @Override
+        public void onReceive(Result result) {
+            if (result == null) {
+                complete(null, "UNKNOWN");
+                return;
+            }
+            StartupParams params = new StartupParams(result.deviceId, result.deviceIdHash, result.uuid);
+            if (params.deviceId != null) {
+                cachedParams = params;
+            }
+            complete(params, null);
+        }
+
+        @Override
+        public void onRequestError(Reason reason, Result result) {
+            complete(null, reason.toString());
+        }
+    };
+
+    private StartupParamsCache() {
+    }
+
+    static StartupParamsCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Serves the cached params unless refresh is requested, otherwise joins or starts a request.
+     */
+    void request(Context context, boolean refresh, Listener listener) {
+        StartupParams params = cachedParams;
+        if (!refresh && params != null) {
+            listener.onResult(params, null);
+            return;
+        }
+        final int generation;
+        synchronized (this) {
+            waitingListeners.add(listener);
+            if (requestInFlight) {
+                return;
+            }
+            requestInFlight = true;
+            generation = ++requestGeneration;
+        }
+        dispatcher.schedule(new Runnable() {
+            @Override
+            public void run() {
+                List<Listener> listeners;
+                synchronized (StartupParamsCache.this) {
+                    if (!requestInFlight || generation != requestGeneration) {
+                        return;
+                    }
+                    listeners = takeWaitingListeners();
+                }
+                notifyListeners(listeners, null, "TIMEOUT");
+            }
+        }, REQUEST_TIMEOUT_MILLIS);
+        ReporterBackends.get().requestStartupParams(context, callback, PARAMS);
+    }
+
+    /**
+     * Answers every waiting listener. A callback coming after the timeout answers the listeners of
+     * the next request, if there is one.
+     */
+    private void complete(StartupParams params, String error) {
+        notifyListeners(takeWaitingListeners(), params, error);
+    }
+
+    private synchronized List<Listener> takeWaitingListeners() {
+        List<Listener> listeners = new ArrayList<Listener>(waitingListeners);
+        waitingListeners.clear();
+        requestInFlight = false;
+        return listeners;
+    }
+
+    private static void notifyListeners(List<Listener> listeners, StartupParams params, String error) {
+        for (Listener listener : listeners) {
+            listener.onResult(params, error);
+        }
+    }
+}
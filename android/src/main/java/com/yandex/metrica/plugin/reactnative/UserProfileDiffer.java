@@ -0,0 +1,162 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.ReadableType;
+
+import io.appmetrica.analytics.profile.Attribute;
+import io.appmetrica.analytics.profile.GenderAttribute;
+import io.appmetrica.analytics.profile.UserProfile;
+import io.appmetrica.analytics.profile.UserProfileUpdate;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the last sent attributes per profile ID, so reportUserProfile only sends what changed.
+ * Values are normalized to String, Double and Boolean. Only accessed from the {@link ReportDispatcher} thread.
+ */
+final class UserProfileDiffer {
+
+    private static final int MAX_PROFILES = 4;
+
+    private final Map<String, Map<String, Object>> snapshots =
+        new LinkedHashMap<String, Map<String, Object>>(MAX_PROFILES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, Object>> eldest) {
+                return size() > MAX_PROFILES;
+            }
+        };
+
+    private String currentProfileId;
+
+    boolean isCurrentProfile(String profileId) {
+        return profileId.equals(currentProfileId);
+    }
+
+    void setCurrentProfile(String profileId) {
+        currentProfileId = profileId;
+    }
+
+    /**
+     * @return the attributes that differ from the last committed snapshot of the profile
+     */
+    Map<String, Object> diff(String profileId, Map<String, Object> values) {
+        Map<String, Object> snapshot = snapshots.get(profileId);
+        if (snapshot == null) {
+            return values;
+        }
+        Map<String, Object> changed = new HashMap<String, Object>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (!entry.getValue().equals(snapshot.get(entry.getKey()))) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return changed;
+    }
+
+    void commit(String profileId, Map<String, Object> changed) {
+        Map<String, Object> snapshot = snapshots.get(profileId);
+        if (snapshot == null) {
+            snapshot = new HashMap<String, Object>();
+            snapshots.put(profileId, snapshot);
+        }
+        snapshot.putAll(changed);
+    }
+
+    /**
+     * Keeps the keys AppMetrica can report, with values of the expected type.
+     */
+    static Map<String, Object> toValues(ReadableMap userProfileParam) {
+        Map<String, Object> values = new HashMap<String, Object>();
+        ReadableMapKeySetIterator iterator = userProfileParam.keySetIterator();
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+            ReadableType type = userProfileParam.getType(key);
+            switch (key) {
+                case "name":
+                    if (type == ReadableType.String) {
+                        values.put(key, userProfileParam.getString(key));
+                    }
+                    break;
+                case "gender":
+                    if (type == ReadableType.String) {
+                        values.put(key, userProfileParam.getString(key).toLowerCase());
+                    }
+                    break;
+                case "birthDate":
+                    if (type == ReadableType.Number) {
+                        values.put(key, userProfileParam.getDouble(key));
+                    }
+                    break;
+                case "notificationsEnabled":
+                    if (type == ReadableType.Boolean) {
+                        values.put(key, userProfileParam.getBoolean(key));
+                    }
+                    break;
+                default:
+                    if (type == ReadableType.String) {
+                        values.put(key, userProfileParam.getString(key));
+                    } else if (type == ReadableType.Number) {
+                        values.put(key, userProfileParam.getDouble(key));
+                    } else if (type == ReadableType.Boolean) {
+                        values.put(key, userProfileParam.getBoolean(key));
+                    }
+                    break;
+            }
+        }
+        return values;
+    }
+
+    static UserProfile toUserProfile(Map<String, Object> values) {
+        UserProfile.Builder userProfileBuilder = UserProfile.newBuilder();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            UserProfileUpdate update;
+            switch (key) {
+                case "name":
+                    update = Attribute.name().withValue((String) value);
+                    break;
+                case "gender":
+                    update = Attribute.gender().withValue(toGender((String) value));
+                    break;
+                case "birthDate":
+                    update = Attribute.birthDate().withAge(((Double) value).intValue());
+                    break;
+                case "notificationsEnabled":
+                    update = Attribute.notificationsEnabled().withValue((Boolean) value);
+                    break;
+                default:
+                    if (value instanceof String) {
+                        update = Attribute.customString(key).withValue((String) value);
+                    } else if (value instanceof Double) {
+                        update = Attribute.customNumber(key).withValue((Double) value);
+                    } else {
+                        update = Attribute.customBoolean(key).withValue((Boolean) value);
+                    }
+                    break;
+            }
+            userProfileBuilder.apply(update);
+        }
+        return userProfileBuilder.build();
+    }
+
+    private static GenderAttribute.Gender toGender(String gender) {
+        if (gender.equals("male")) {
+            return GenderAttribute.Gender.MALE;
+        } else if (gender.equals("female")) {
+            return GenderAttribute.Gender.FEMALE;
+        }
+        return GenderAttribute.Gender.OTHER;
+    }
+}
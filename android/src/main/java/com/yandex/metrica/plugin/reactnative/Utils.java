@@ -10,10 +10,20 @@ package io.appmetrica.analytics.plugin.reactnative;
 
 import android.location.Location;
 
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
 import io.appmetrica.analytics.PreloadInfo;
 import io.appmetrica.analytics.AppMetricaConfig;
+import io.appmetrica.analytics.ReporterConfig;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -62,12 +72,95 @@ abstract class Utils {
         return builder.build();
     }
 
+    static EventLimiter.Policy toEventLimiterPolicy(ReadableMap limitsMap) {
+        Map<String, EventLimiter.Rule> rules = new HashMap<String, EventLimiter.Rule>();
+        if (limitsMap.hasKey("events")) {
+            ReadableMap eventsMap = limitsMap.getMap("events");
+            ReadableMapKeySetIterator iterator = eventsMap.keySetIterator();
+            while (iterator.hasNextKey()) {
+                String eventName = iterator.nextKey();
+                rules.put(eventName, toEventLimiterRule(eventsMap.getMap(eventName)));
+            }
+        }
+
+        EventLimiter.Rule globalRule = null;
+        if (limitsMap.hasKey("globalPerMinute")) {
+            int perMinute = limitsMap.getInt("globalPerMinute");
+            globalRule = new EventLimiter.Rule(1, perMinute / 60.0, perMinute);
+        }
+
+        long summaryIntervalMillis = 60000L;
+        if (limitsMap.hasKey("summaryInterval")) {
+            summaryIntervalMillis = limitsMap.getInt("summaryInterval") * 1000L;
+        }
+
+        return new EventLimiter.Policy(rules, globalRule, summaryIntervalMillis);
+    }
+
+    private static EventLimiter.Rule toEventLimiterRule(ReadableMap ruleMap) {
+        double sampleRate = ruleMap.hasKey("sampleRate") ? ruleMap.getDouble("sampleRate") : 1;
+        double perSecond = ruleMap.hasKey("perSecond") ? ruleMap.getDouble("perSecond") : 0;
+        int burst = ruleMap.hasKey("burst") ? ruleMap.getInt("burst") : 1;
+        return new EventLimiter.Rule(sampleRate, perSecond, burst);
+    }
+
+    static ReporterConfig toReporterConfig(String apiKey, ReadableMap configMap) {
+        ReporterConfig.Builder builder = ReporterConfig.newConfigBuilder(apiKey);
+        if (configMap == null) {
+            return builder.build();
+        }
+        if (configMap.hasKey("logs") && configMap.getBoolean("logs")) {
+            builder.withLogs();
+        }
+        if (configMap.hasKey("maxReportsInDatabaseCount")) {
+            builder.withMaxReportsInDatabaseCount(configMap.getInt("maxReportsInDatabaseCount"));
+        }
+        if (configMap.hasKey("sessionTimeout")) {
+            builder.withSessionTimeout(configMap.getInt("sessionTimeout"));
+        }
+        if (configMap.hasKey("statisticsSending")) {
+            builder.withDataSendingEnabled(configMap.getBoolean("statisticsSending"));
+        }
+        if (configMap.hasKey("userProfileID")) {
+            builder.withUserProfileID(configMap.getString("userProfileID"));
+        }
+        return builder.build();
+    }
+
+    static FlushScheduler.Policy toFlushPolicy(ReadableMap policyMap) {
+        int maxPendingEvents = policyMap.hasKey("maxPendingEvents") ? policyMap.getInt("maxPendingEvents") : 0;
+        long maxEventAgeMillis = policyMap.hasKey("maxEventAge") ? policyMap.getInt("maxEventAge") * 1000L : 0;
+        boolean flushOnPause = !policyMap.hasKey("flushOnPause") || policyMap.getBoolean("flushOnPause");
+        long maxOfflineBackoffMillis = policyMap.hasKey("maxOfflineBackoff")
+                ? policyMap.getInt("maxOfflineBackoff") * 1000L : 600000L;
+        return new FlushScheduler.Policy(maxPendingEvents, maxEventAgeMillis, flushOnPause, maxOfflineBackoffMillis);
+    }
+
+    static ReportDispatcher.OverflowPolicy toOverflowPolicy(String policy) {
+        if ("dropNewest".equals(policy)) {
+            return ReportDispatcher.OverflowPolicy.DROP_NEWEST;
+        }
+        if ("block".equals(policy)) {
+            return ReportDispatcher.OverflowPolicy.BLOCK;
+        }
+        return ReportDispatcher.OverflowPolicy.DROP_OLDEST;
+    }
+
+    static final String LOCATION_PROVIDER = "Custom";
+
     static Location toLocation(ReadableMap locationMap) {
         if (locationMap == null) {
             return null;
         }
+        return toLocation(locationMap, new Location(LOCATION_PROVIDER));
+    }
 
-        Location location = new Location("Custom");
+    /**
+     * Fills an existing location, so callers that only inspect the result don't allocate.
+     */
+    static Location toLocation(ReadableMap locationMap, Location location) {
+        location.reset();
+        location.setProvider(LOCATION_PROVIDER);
 
         if (locationMap.hasKey("latitude")) {
             location.setLatitude(locationMap.getDouble("latitude"));
@@ -94,6 +187,106 @@ abstract class Utils {
         return location;
     }
 
+    static JSONObject toJson(ReadableMap map) throws JSONException {
+        JSONObject json = new JSONObject();
+        ReadableMapKeySetIterator iterator = map.keySetIterator();
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+            switch (map.getType(key)) {
+                case Null:
+                    json.put(key, JSONObject.NULL);
+                    break;
+                case Boolean:
+                    json.put(key, map.getBoolean(key));
+                    break;
+                case Number:
+                    json.put(key, map.getDouble(key));
+                    break;
+                case String:
+                    json.put(key, map.getString(key));
+                    break;
+                case Map:
+                    json.put(key, toJson(map.getMap(key)));
+                    break;
+                case Array:
+                    json.put(key, toJson(map.getArray(key)));
+                    break;
+            }
+        }
+        return json;
+    }
+
+    static JSONArray toJson(ReadableArray array) throws JSONException {
+        JSONArray json = new JSONArray();
+        for (int i = 0; i < array.size(); i++) {
+            switch (array.getType(i)) {
+                case Null:
+                    json.put(JSONObject.NULL);
+                    break;
+                case Boolean:
+                    json.put(array.getBoolean(i));
+                    break;
+                case Number:
+                    json.put(array.getDouble(i));
+                    break;
+                case String:
+                    json.put(array.getString(i));
+                    break;
+                case Map:
+                    json.put(toJson(array.getMap(i)));
+                    break;
+                case Array:
+                    json.put(toJson(array.getArray(i)));
+                    break;
+            }
+        }
+        return json;
+    }
+
+    static JavaOnlyMap toReadableMap(JSONObject json) throws JSONException {
+        JavaOnlyMap map = new JavaOnlyMap();
+        Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            Object value = json.get(key);
+            if (value instanceof JSONObject) {
+                map.putMap(key, toReadableMap((JSONObject) value));
+            } else if (value instanceof JSONArray) {
+                map.putArray(key, toReadableArray((JSONArray) value));
+            } else if (value instanceof Boolean) {
+                map.putBoolean(key, (Boolean) value);
+            } else if (value instanceof Number) {
+                map.putDouble(key, ((Number) value).doubleValue());
+            } else if (value instanceof String) {
+                map.putString(key, (String) value);
+            } else {
+                map.putNull(key);
+            }
+        }
+        return map;
+    }
+
+    static JavaOnlyArray toReadableArray(JSONArray json) throws JSONException {
+        JavaOnlyArray array = new JavaOnlyArray();
+        for (int i = 0; i < json.length(); i++) {
+            Object value = json.get(i);
+            if (value instanceof JSONObject) {
+                array.pushMap(toReadableMap((JSONObject) value));
+            } else if (value instanceof JSONArray) {
+                array.pushArray(toReadableArray((JSONArray) value));
+            } else if (value instanceof Boolean) {
+                array.pushBoolean((Boolean) value);
+            } else if (value instanceof Number) {
+                array.pushDouble(((Number) value).doubleValue());
+            } else if (value instanceof String) {
+                array.pushString((String) value);
+            } else {
+                array.pushNull();
+            }
+        }
+        return array;
+    }
+
     private static PreloadInfo toPreloadInfo(ReadableMap preloadInfoMap) {
         if (preloadInfoMap == null) {
             return null;
@@ -113,4 +306,26 @@ abstract class Utils {
 
         return builder.build();
     }
+
+    /**
+     * @return length of the string in UTF-8, without encoding it
+     */
+    static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
 }
@@ -0,0 +1,21 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+
+/**
+ * New Architecture base of {@link AppMetricaModule}: the TurboModule spec generated from src/NativeAppMetrica.js.
+ */
+abstract class AppMetricaModuleSpec extends NativeAppMetricaSpec {
+
+    AppMetricaModuleSpec(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+
+/**
+ * Legacy bridge base of {@link AppMetricaModule}.
+ */
+abstract class AppMetricaModuleSpec extends ReactContextBaseJavaModule {
+
+    AppMetricaModuleSpec(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+}
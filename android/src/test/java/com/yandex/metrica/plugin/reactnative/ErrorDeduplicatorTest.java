@@ -0,0 +1,88 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ErrorDeduplicatorTest {
+
+    private final List<Object[]> reportedEvents = new ArrayList<Object[]>();
+    private ErrorDeduplicator deduplicator;
+
+    @Before
+    public void setUp() {
+        ReporterBackends.set((ReporterBackend) Proxy.newProxyInstance(ReporterBackend.class.getClassLoader(),
+                new Class<?>[]{ReporterBackend.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("reportEvent".equals(method.getName())) {
+                            reportedEvents.add(args);
+                        }
+                        return null;
+                    }
+                }));
+        deduplicator = new ErrorDeduplicator(new ReportDispatcher(16));
+        deduplicator.setWindowMillis(60000);
+    }
+
+    @After
+    public void tearDown() {
+        ReporterBackends.set(null);
+    }
+
+    @Test
+    public void suppressesRepeatsWithinWindow() {
+        assertEquals(0, deduplicator.onError("a", "boom", 0));
+        assertEquals(ErrorDeduplicator.NOT_REPORTED, deduplicator.onError("a", "boom", 500));
+        assertEquals(0, deduplicator.onError("b", "other", 500));
+        assertEquals(1, deduplicator.getSuppressedCount());
+    }
+
+    @Test
+    public void foldsRepeatsIntoNextReportAfterWindow() {
+        deduplicator.onError("a", "boom", 0);
+        deduplicator.onError("a", "boom", 100);
+        deduplicator.onError("a", "boom", 200);
+        assertEquals(2, deduplicator.onError("a", "boom", 60000));
+        assertTrue(reportedEvents.isEmpty());
+    }
+
+    @Test
+    public void flushReportsPendingRepeats() {
+        deduplicator.onError("a", "boom 1", 0);
+        deduplicator.onError("a", "boom 2", 100);
+        deduplicator.onError("a", "boom 3", 200);
+        deduplicator.onError("b", "other", 0);
+
+        deduplicator.flush();
+
+        assertEquals(1, reportedEvents.size());
+        assertEquals(ErrorDeduplicator.SUMMARY_EVENT_NAME, reportedEvents.get(0)[0]);
+        Map<?, ?> summary = (Map<?, ?>) reportedEvents.get(0)[1];
+        assertEquals(1, summary.size());
+        Map<?, ?> error = (Map<?, ?>) summary.get("a");
+        assertEquals(2, error.get("count"));
+        assertEquals("boom 3", error.get("message"));
+
+        deduplicator.flush();
+        assertEquals(1, reportedEvents.size());
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventJournalTest {
+
+    private static final String PADDING = "0123456789012345678901234567890123456789012345678901234567890123456789";
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("journal", null);
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void recoversRecordsAfterReopen() {
+        EventJournal journal = EventJournal.open(file, 4096);
+        long first = journal.append(EventJournal.TYPE_EVENT, "first", "{\"a\":1}");
+        long second = journal.append(EventJournal.TYPE_EVENT, null, (String) null);
+        long third = journal.append(EventJournal.TYPE_USER_PROFILE, "user", "{}");
+        assertTrue(first < second && second < third);
+
+        List<EventJournal.Record> records = EventJournal.open(file, 4096).takeRecovered();
+
+        assertEquals(3, records.size());
+        assertRecord(records.get(0), EventJournal.TYPE_EVENT, "first", "{\"a\":1}");
+        assertRecord(records.get(1), EventJournal.TYPE_EVENT, null, null);
+        assertRecord(records.get(2), EventJournal.TYPE_USER_PROFILE, "user", "{}");
+        assertTrue(records.get(0).position < records.get(1).position);
+        assertTrue(records.get(1).position < records.get(2).position);
+    }
+
+    @Test
+    public void recoversOnlyRecordsAfterCheckpoint() {
+        EventJournal journal = EventJournal.open(file, 4096);
+        journal.append(EventJournal.TYPE_EVENT, "first", "{}");
+        journal.checkpoint(journal.append(EventJournal.TYPE_EVENT, "second", "{}"));
+        journal.append(EventJournal.TYPE_EVENT, "third", "{}");
+
+        EventJournal reopened = EventJournal.open(file, 4096);
+        List<EventJournal.Record> records = reopened.takeRecovered();
+        assertEquals(1, records.size());
+        assertEquals("third", records.get(0).value);
+        assertTrue(reopened.takeRecovered().isEmpty());
+
+        reopened.checkpoint(records.get(0).position);
+        assertTrue(EventJournal.open(file, 4096).takeRecovered().isEmpty());
+    }
+
+    @Test
+    public void encodesMapsAndArraysAsJson() {
+        JavaOnlyMap attributes = new JavaOnlyMap();
+        attributes.putString("text", "q\"b\\s\n\u0001ж😀");
+        attributes.putDouble("whole", -42);
+        attributes.putDouble("fraction", 1.5);
+        attributes.putDouble("nan", Double.NaN);
+        attributes.putBoolean("flag", true);
+        attributes.putNull("none");
+        attributes.putMap("map", JavaOnlyMap.of("x", 0));
+        attributes.putArray("array", JavaOnlyArray.of(1, "two", false));
+
+        EventJournal journal = EventJournal.open(file, 4096);
+        journal.append(EventJournal.TYPE_EVENT, "event", attributes);
+        journal.append(EventJournal.TYPE_EVENTS, null, JavaOnlyArray.of(JavaOnlyMap.of("name", "e")));
+        journal.append(EventJournal.TYPE_EVENT, "empty", (ReadableMap) null);
+
+        List<EventJournal.Record> records = EventJournal.open(file, 4096).takeRecovered();
+
+        assertEquals(3, records.size());
+        assertRecord(records.get(0), EventJournal.TYPE_EVENT, "event",
+            "{\"text\":\"q\\\"b\\\\s\\u000a\\u0001ж😀\",\"whole\":-42,\"fraction\":1.5,"
+                + "\"nan\":null,\"flag\":true,\"none\":null,\"map\":{\"x\":0},\"array\":[1,\"two\",false]}");
+        assertRecord(records.get(1), EventJournal.TYPE_EVENTS, null, "[{\"name\":\"e\"}]");
+        assertRecord(records.get(2), EventJournal.TYPE_EVENT, "empty", null);
+    }
+
+    @Test
+    public void dropsOldestRecordsWhenFull() {
+        EventJournal journal = EventJournal.open(file, 4096);
+        for (int i = 0; i < 100; i++) {
+            journal.append(EventJournal.TYPE_EVENT, "event " + i, PADDING);
+        }
+        assertTrue((Double) journal.getStats().get("dropped") > 0);
+
+        assertNewestRecords(EventJournal.open(file, 4096).takeRecovered(), 100);
+    }
+
+    @Test
+    public void recoversIntoJournalOfAnotherSize() {
+        EventJournal journal = EventJournal.open(file, 16384);
+        for (int i = 0; i < 100; i++) {
+            journal.append(EventJournal.TYPE_EVENT, "event " + i, PADDING);
+        }
+
+        // Everything read is handed over, only the newest records fit in the smaller file
+        assertEquals(100, EventJournal.open(file, 4096).takeRecovered().size());
+        List<EventJournal.Record> shrunk = EventJournal.open(file, 4096).takeRecovered();
+        assertTrue(shrunk.size() < 100);
+        assertNewestRecords(shrunk, 100);
+
+        List<EventJournal.Record> grown = EventJournal.open(file, 65536).takeRecovered();
+        assertEquals(shrunk.size(), grown.size());
+        assertNewestRecords(grown, 100);
+    }
+
+    @Test
+    public void ignoresTornTail() throws IOException {
+        EventJournal journal = EventJournal.open(file, 4096);
+        journal.append(EventJournal.TYPE_EVENT, "first", "{}");
+        journal.append(EventJournal.TYPE_EVENT, "second", "{}");
+        long end = journal.getTail();
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            // A record being written past the tail when the process was killed
+            randomAccessFile.seek(EventJournal.HEADER_SIZE + end);
+            randomAccessFile.writeInt(Integer.MAX_VALUE);
+            randomAccessFile.writeByte(EventJournal.TYPE_EVENT);
+        } finally {
+            randomAccessFile.close();
+        }
+        assertEquals(2, EventJournal.open(file, 4096).takeRecovered().size());
+    }
+
+    @Test
+    public void stopsAtCorruptedRecord() throws IOException {
+        EventJournal journal = EventJournal.open(file, 4096);
+        long first = journal.append(EventJournal.TYPE_EVENT, "first", "{}");
+        journal.append(EventJournal.TYPE_EVENT, "second", "{}");
+        journal.append(EventJournal.TYPE_EVENT, "third", "{}");
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            // The value length of the second record
+            randomAccessFile.seek(EventJournal.HEADER_SIZE + first + 5);
+            randomAccessFile.writeInt(Integer.MAX_VALUE);
+        } finally {
+            randomAccessFile.close();
+        }
+        List<EventJournal.Record> records = EventJournal.open(file, 4096).takeRecovered();
+        assertEquals(1, records.size());
+        assertEquals("first", records.get(0).value);
+    }
+
+    private static void assertRecord(EventJournal.Record record, byte type, String value, String payload) {
+        assertEquals(type, record.type);
+        assertEquals(value, record.value);
+        if (payload == null) {
+            assertNull(record.payload);
+        } else {
+            assertEquals(payload, record.payload);
+        }
+    }
+
+    private static void assertNewestRecords(List<EventJournal.Record> records, int count) {
+        assertTrue(!records.isEmpty());
+        for (int i = 0; i < records.size(); i++) {
+            assertRecord(records.get(i), EventJournal.TYPE_EVENT, "event " + (count - records.size() + i), PADDING);
+        }
+    }
+}
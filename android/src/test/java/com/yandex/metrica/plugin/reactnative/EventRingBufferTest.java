@@ -0,0 +1,113 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventRingBufferTest {
+
+    @Test
+    public void roundsCapacityUpToPowerOfTwo() {
+        assertEquals(8, new EventRingBuffer<Integer>(5).capacity());
+        assertEquals(8, new EventRingBuffer<Integer>(8).capacity());
+    }
+
+    @Test
+    public void pollsInOfferOrder() {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<Integer>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Integer.valueOf(i), buffer.poll());
+        }
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void rejectsOfferWhenFull() {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<Integer>(2);
+        assertTrue(buffer.offer(1));
+        assertTrue(buffer.offer(2));
+        assertFalse(buffer.offer(3));
+        assertEquals(2, buffer.size());
+        assertEquals(Integer.valueOf(1), buffer.poll());
+        assertTrue(buffer.offer(3));
+    }
+
+    @Test
+    public void tracksPositionsAcrossWrapAround() {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<Integer>(4);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(buffer.offer(i));
+            assertEquals(Integer.valueOf(i), buffer.poll());
+        }
+        assertEquals(100, buffer.headPosition());
+        assertEquals(100, buffer.tailPosition());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void deliversEveryElementOnceUnderContention() throws InterruptedException {
+        final EventRingBuffer<Long> buffer = new EventRingBuffer<Long>(64);
+        final int producers = 4;
+        final int perProducer = 50000;
+        final AtomicLong consumedSum = new AtomicLong();
+        final AtomicLong consumedCount = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(producers);
+        Thread[] threads = new Thread[producers + 2];
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (long value = 1; value <= perProducer; value++) {
+                        while (!buffer.offer(value)) {
+                            Thread.yield();
+                        }
+                    }
+                    done.countDown();
+                }
+            });
+        }
+        for (int c = producers; c < threads.length; c++) {
+            threads[c] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (true) {
+                        Long value = buffer.poll();
+                        if (value != null) {
+                            consumedSum.addAndGet(value);
+                            consumedCount.incrementAndGet();
+                        } else if (done.getCount() == 0 && buffer.size() == 0) {
+                            return;
+                        } else {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals((long) producers * perProducer, consumedCount.get());
+        assertEquals((long) producers * perProducer * (perProducer + 1) / 2, consumedSum.get());
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class JsonPayloadValidatorTest {
+
+    private final JsonPayloadValidator validator = new JsonPayloadValidator();
+
+    @Before
+    public void setUp() {
+        validator.setMaxDepth(3);
+    }
+
+    @Test
+    public void acceptsWellFormedObjects() {
+        assertNull(validator.validate("{}"));
+        assertNull(validator.validate(" { \"a\" : 1, \"b\": [true, false, null, -1.5e+3, \"x\\u00e9\\n\"], \"c\": {} } "));
+        assertNull(validator.validate("{\"a\":{\"b\":[0]}}"));
+    }
+
+    @Test
+    public void rejectsMalformedJson() {
+        String[] malformed = {
+            "", "[]", "\"a\"", "{", "{\"a\"}", "{\"a\":}", "{\"a\":1,}", "{a:1}", "{\"a\":1}}",
+            "{\"a\":[1,]}", "{\"a\":[1}", "{\"a\":01}", "{\"a\":1.}", "{\"a\":tru}", "{\"a\":\"\\x\"}",
+            "{\"a\":\"unterminated}", "{\"a\":1} {}", "{\"a\":\"\\u12\"}", "{\"a\" 1}",
+        };
+        for (String json : malformed) {
+            assertNotNull(json, validator.validate(json));
+        }
+    }
+
+    @Test
+    public void limitsDepth() {
+        assertNull(validator.validate("{\"a\":{\"b\":{}}}"));
+        assertNotNull(validator.validate("{\"a\":{\"b\":{\"c\":{}}}}"));
+    }
+
+    @Test
+    public void growsNestingStackWithoutLimit() {
+        validator.setMaxDepth(JsonPayloadValidator.NO_LIMIT);
+        StringBuilder json = new StringBuilder("{\"a\":");
+        for (int i = 0; i < 100; i++) {
+            json.append('[');
+        }
+        for (int i = 0; i < 100; i++) {
+            json.append(']');
+        }
+        assertNull(validator.validate(json.append('}').toString()));
+    }
+
+    @Test
+    public void limitsSizeInUtf8Bytes() {
+        validator.setMaxLength(12);
+        // 10 chars, 13 bytes
+        assertNotNull(validator.validate("{\"a\":\"ééé\"}"));
+        assertNull(validator.validate("{\"a\":\"eee\"}"));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsAggregatorTest {
+
+    @Test
+    public void estimatesPercentilesFromBuckets() {
+        long[] buckets = new long[MetricsAggregator.BUCKET_COUNT];
+        for (int value = 1; value <= 1000; value++) {
+            buckets[MetricsAggregator.bucketOf(value)]++;
+        }
+        assertEquals(500, MetricsAggregator.percentile(buckets, 0, 1000, 1, 1000, 0.5), 50);
+        assertEquals(900, MetricsAggregator.percentile(buckets, 0, 1000, 1, 1000, 0.9), 90);
+        assertEquals(990, MetricsAggregator.percentile(buckets, 0, 1000, 1, 1000, 0.99), 99);
+    }
+
+    @Test
+    public void clampsPercentilesToMinAndMax() {
+        long[] buckets = new long[MetricsAggregator.BUCKET_COUNT];
+        buckets[MetricsAggregator.bucketOf(7.5)] = 3;
+        assertEquals(7.5, MetricsAggregator.percentile(buckets, 0, 3, 7.5, 7.5, 0.99), 0);
+        buckets[MetricsAggregator.bucketOf(0)] = 1;
+        assertEquals(0, MetricsAggregator.percentile(buckets, 0, 4, 0, 7.5, 0.1), 0.001);
+    }
+
+    @Test
+    public void dimensionOrderDoesNotChangeTheKey() {
+        assertEquals(
+            MetricsAggregator.keyHash("shown", JavaOnlyMap.of("feed", "main", "page", 2)),
+            MetricsAggregator.keyHash("shown", JavaOnlyMap.of("page", 2, "feed", "main"))
+        );
+        assertEquals(MetricsAggregator.keyHash("shown", null), MetricsAggregator.keyHash("shown", new JavaOnlyMap()));
+        assertTrue(MetricsAggregator.keyHash("shown", JavaOnlyMap.of("feed", "main"))
+            != MetricsAggregator.keyHash("shown", JavaOnlyMap.of("feed", "other")));
+    }
+
+    @Test
+    public void dropsNewKeysAboveTheLimit() {
+        MetricsAggregator metrics = new MetricsAggregator();
+        metrics.setMaxKeys(2);
+        metrics.incrementCounter("a", 0.5, null);
+        metrics.incrementCounter("a", 0.5, JavaOnlyMap.of("x", 1));
+        metrics.recordValue("b", 1);
+        metrics.incrementCounter("a", 1, null);
+        assertEquals(2.0, metrics.getStats().get("keys"));
+        assertEquals(1.0, metrics.getStats().get("dropped"));
+    }
+}
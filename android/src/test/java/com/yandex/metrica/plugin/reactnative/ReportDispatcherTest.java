@@ -0,0 +1,143 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReportDispatcherTest {
+
+    private static final int CAPACITY = 4;
+
+    private final ReportDispatcher dispatcher = new ReportDispatcher(CAPACITY);
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Test
+    public void dropOldestKeepsNewestReports() throws InterruptedException {
+        dispatcher.setOverflowPolicy(ReportDispatcher.OverflowPolicy.DROP_OLDEST);
+        blockWorker();
+        for (int i = 0; i < 6; i++) {
+            dispatcher.dispatch(record("e" + i));
+        }
+        release.countDown();
+        awaitIdle();
+        assertEquals(Arrays.asList("e2", "e3", "e4", "e5"), ran);
+        assertEquals(2, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void dropNewestKeepsOldestReports() throws InterruptedException {
+        dispatcher.setOverflowPolicy(ReportDispatcher.OverflowPolicy.DROP_NEWEST);
+        blockWorker();
+        for (int i = 0; i < 6; i++) {
+            dispatcher.dispatch(record("e" + i));
+        }
+        release.countDown();
+        awaitIdle();
+        assertEquals(Arrays.asList("e0", "e1", "e2", "e3"), ran);
+        assertEquals(2, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void blockWaitsForSpaceAndDropsNothing() throws InterruptedException {
+        dispatcher.setOverflowPolicy(ReportDispatcher.OverflowPolicy.BLOCK);
+        blockWorker();
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 6; i++) {
+                    dispatcher.dispatch(record("e" + i));
+                }
+            }
+        });
+        producer.start();
+        producer.join(200);
+        assertTrue("producer should wait while the buffer is full", producer.isAlive());
+        release.countDown();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        awaitIdle();
+        assertEquals(Arrays.asList("e0", "e1", "e2", "e3", "e4", "e5"), ran);
+        assertEquals(0, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void controlTasksAreNeverDropped() throws InterruptedException {
+        dispatcher.setOverflowPolicy(ReportDispatcher.OverflowPolicy.DROP_OLDEST);
+        blockWorker();
+        dispatcher.dispatch(record("e0"));
+        dispatcher.dispatchControl(record("activate"));
+        for (int i = 1; i < 10; i++) {
+            dispatcher.dispatch(record("e" + i));
+        }
+        release.countDown();
+        awaitIdle();
+        assertEquals(Arrays.asList("activate", "e6", "e7", "e8", "e9"), ran);
+        assertEquals(6, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void controlTasksRunAfterEarlierReports() throws InterruptedException {
+        blockWorker();
+        dispatcher.dispatch(record("e0"));
+        dispatcher.dispatch(record("e1"));
+        dispatcher.dispatchControl(record("control"));
+        dispatcher.dispatch(record("e2"));
+        release.countDown();
+        awaitIdle();
+        assertEquals(Arrays.asList("e0", "e1", "control", "e2"), ran);
+    }
+
+    private Runnable record(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                ran.add(name);
+            }
+        };
+    }
+
+    private void blockWorker() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        dispatcher.dispatchControl(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        final CountDownLatch idle = new CountDownLatch(1);
+        dispatcher.dispatchControl(new Runnable() {
+            @Override
+            public void run() {
+                idle.countDown();
+            }
+        });
+        assertTrue(idle.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+package io.appmetrica.analytics.plugin.reactnative;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UserProfileDifferTest {
+
+    @Test
+    public void toValuesKeepsSupportedKeysAndTypes() {
+        JavaOnlyMap profile = JavaOnlyMap.of(
+            "name", "Ann",
+            "gender", "FEMALE",
+            "birthDate", 30,
+            "notificationsEnabled", true,
+            "city", "Moscow",
+            "visits", 3,
+            "premium", false
+        );
+        profile.putNull("nickname");
+        profile.putArray("tags", JavaOnlyArray.of("a"));
+        profile.putMap("address", JavaOnlyMap.of("street", "Lva Tolstogo"));
+
+        Map<String, Object> values = UserProfileDiffer.toValues(profile);
+
+        assertEquals(7, values.size());
+        assertEquals("Ann", values.get("name"));
+        assertEquals("female", values.get("gender"));
+        assertEquals(30.0, values.get("birthDate"));
+        assertEquals(true, values.get("notificationsEnabled"));
+        assertEquals("Moscow", values.get("city"));
+        assertEquals(3.0, values.get("visits"));
+        assertEquals(false, values.get("premium"));
+    }
+
+    @Test
+    public void toValuesDropsPredefinedKeysOfWrongType() {
+        Map<String, Object> values = UserProfileDiffer.toValues(JavaOnlyMap.of(
+            "name", 1,
+            "gender", true,
+            "birthDate", "1990-01-01",
+            "notificationsEnabled", "yes"
+        ));
+        assertTrue(values.isEmpty());
+    }
+
+    @Test
+    public void diffReturnsEverythingUntilCommitted() {
+        UserProfileDiffer differ = new UserProfileDiffer();
+        Map<String, Object> values = UserProfileDiffer.toValues(JavaOnlyMap.of("name", "Ann", "visits", 3));
+
+        assertEquals(values, differ.diff("user", values));
+        assertEquals(values, differ.diff("user", values));
+
+        differ.commit("user", values);
+        assertTrue(differ.diff("user", values).isEmpty());
+    }
+
+    @Test
+    public void diffReturnsOnlyChangedValues() {
+        UserProfileDiffer differ = new UserProfileDiffer();
+        differ.commit("user", UserProfileDiffer.toValues(JavaOnlyMap.of("name", "Ann", "visits", 3)));
+
+        Map<String, Object> changed = differ.diff("user",
+            UserProfileDiffer.toValues(JavaOnlyMap.of("name", "Ann", "visits", 4, "city", "Moscow")));
+
+        assertEquals(2, changed.size());
+        assertEquals(4.0, changed.get("visits"));
+        assertEquals("Moscow", changed.get("city"));
+    }
+
+    @Test
+    public void snapshotsAreKeptPerProfile() {
+        UserProfileDiffer differ = new UserProfileDiffer();
+        Map<String, Object> values = UserProfileDiffer.toValues(JavaOnlyMap.of("name", "Ann"));
+        differ.commit("first", values);
+
+        assertTrue(differ.diff("first", values).isEmpty());
+        assertEquals(values, differ.diff("second", values));
+    }
+
+    @Test
+    public void tracksCurrentProfile() {
+        UserProfileDiffer differ = new UserProfileDiffer();
+        assertFalse(differ.isCurrentProfile("user"));
+        differ.setCurrentProfile("user");
+        assertTrue(differ.isCurrentProfile("user"));
+        assertFalse(differ.isCurrentProfile("other"));
+    }
+}
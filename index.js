@@ -7,8 +7,10 @@
  */
 
 import {NativeModules} from 'react-native';
+import NativeAppMetrica from './src/NativeAppMetrica';
 
-const {AppMetrica} = NativeModules;
+// TurboModule when the New Architecture is enabled, the legacy bridge module otherwise
+const AppMetrica = NativeAppMetrica || NativeModules.AppMetrica;
 
 type AppMetricaConfig = {
   apiKey: string,
@@ -25,11 +27,72 @@ type AppMetricaConfig = {
   installedAppCollecting?: boolean,
   maxReportsInDatabaseCount?: number,
   nativeCrashReporting?: boolean,
+  // What to do when the native report queue is full (default 'dropOldest'). Only reports are dropped,
+  // activation, config, sessions, profiles and flushes never are. 'block' drops the oldest on the main thread.
+  dispatchOverflowPolicy?: 'dropOldest' | 'dropNewest' | 'block',
+  // Limits for reportEventJson payloads in UTF-8 bytes and nesting depth, unlimited by default.
+  // With either limit set, payloads that are not a well-formed JSON object are dropped too.
+  maxEventJsonLength?: number,
+  maxEventJsonDepth?: number,
+  eventLimits?: EventLimits,
+  // When to call sendEventsBuffer natively, so JS doesn't have to
+  flushPolicy?: FlushPolicy,
+  // Repeats of the same JS error within this many seconds are not reported (default 60, 0 to report all).
+  // They are counted in an appmetrica_plugin_suppressed_errors event when the window ends.
+  errorDedupWindow?: number,
+  // Keep reports in a file until they reach AppMetrica and report leftovers on the next start.
+  // maxSize is in bytes (default 262144), the oldest reports are dropped above it.
+  eventJournal?: {maxSize?: number},
+  // setLocation updates closer than minDistance meters to the last passed one, or sooner than
+  // minInterval seconds after it, are dropped natively. Much more accurate fixes still pass.
+  locationThrottle?: {minDistance?: number, minInterval?: number},
+  // Open timing spans above this number are not started (default 256)
+  maxOpenSpans?: number,
+  // Seconds between metric events (default 60)
+  metricsFlushInterval?: number,
+  // Distinct counter and histogram keys kept between metric events (default 256), updates of
+  // new keys above it are counted in an appmetrica_plugin_metrics_overflow event
+  maxMetricKeys?: number,
+  // Pause and resume the session natively from activity callbacks, pauseSession/resumeSession become no-ops.
+  // The pause comes sessionPauseDelay seconds after the last activity pauses (default 0.7).
+  nativeSessionTracking?: boolean,
+  sessionPauseDelay?: number,
+  // Plugin call counts and latencies, see getPluginStats (default false)
+  pluginStats?: boolean,
+  // Seconds between appmetrica_plugin_stats events, not reported by default
+  pluginStatsReportInterval?: number,
   // Only iOS
   activationAsSessionStart?: boolean,
   sessionsAutoTracking?: boolean,
 }
 
+type EventLimitRule = {
+  // Share of events to keep, from 0 to 1 (default 1)
+  sampleRate?: number,
+  // Sustained events per second and bucket size (default unlimited)
+  perSecond?: number,
+  burst?: number,
+}
+
+type EventLimits = {
+  events?: {[eventName: string]: EventLimitRule},
+  // Cap on all events together
+  globalPerMinute?: number,
+  // Seconds between summary events with dropped counts (default 60)
+  summaryInterval?: number,
+}
+
+type FlushPolicy = {
+  // Flush after this many reports
+  maxPendingEvents?: number,
+  // Flush when the oldest unsent report is this many seconds old
+  maxEventAge?: number,
+  // Flush when the app goes to background (default true)
+  flushOnPause?: boolean,
+  // Automatic flushes are retried with backoff up to this many seconds while offline (default 600)
+  maxOfflineBackoff?: number,
+}
+
 type PreloadInfo = {
   trackingId: string,
   additionalInfo?: Object,
@@ -45,7 +108,126 @@ type Location = {
   timestamp?: number
 }
 
-type AppMetricaDeviceIdReason = 'UNKNOWN' | 'NETWORK' | 'INVALID_RESPONSE';
+type AppMetricaDeviceIdReason = 'UNKNOWN' | 'NETWORK' | 'INVALID_RESPONSE' | 'TIMEOUT';
+
+type StartupParams = {
+  deviceId: ?string,
+  deviceIdHash: ?string,
+  uuid: ?string,
+}
+
+type InstallReferrer = {
+  referrer: ?string,
+  clickTimestamp: number,
+  installBeginTimestamp: number,
+}
+
+type PendingReportStats = {
+  queued: number,
+  replayed: number,
+  dropped: number,
+}
+
+type AppMetricaEvent = {
+  name: string,
+  attributes?: ?Object,
+}
+
+type ReporterConfig = {
+  logs?: boolean,
+  maxReportsInDatabaseCount?: number,
+  sessionTimeout?: number,
+  statisticsSending?: boolean,
+  userProfileID?: string,
+}
+
+type Reporter = {
+  reportEvent(eventName: string, attributes: ?Object): void,
+  reportEvents(events: Array<AppMetricaEvent>): void,
+  pauseSession(): void,
+  resumeSession(): void,
+  sendEventsBuffer(): void,
+}
+
+type EventSchemaType = 'string' | 'number' | 'boolean' | 'object' | 'array' | 'any';
+
+type EventBatchingOptions = {
+  // Flush as soon as this many events are collected (default 50).
+  maxBatchSize?: number,
+}
+
+const DEFAULT_MAX_BATCH_SIZE = 50;
+
+let eventBatching: ?EventBatchingOptions = null;
+let pendingEvents: Array<AppMetricaEvent> = [];
+let pendingReporterEvents: {[apiKey: string]: Array<AppMetricaEvent>} = {};
+let flushScheduled = false;
+const reporters: {[apiKey: string]: Reporter} = {};
+
+function scheduleFlush() {
+  if (flushScheduled) {
+    return;
+  }
+  flushScheduled = true;
+  const schedule = typeof requestAnimationFrame === 'function' ? requestAnimationFrame : setTimeout;
+  schedule(flushPendingEvents);
+}
+
+// Every call that reports something without batching flushes the batch first,
+// so reports reach AppMetrica in the order they were made.
+function flushPendingEvents() {
+  flushScheduled = false;
+  const reporterEvents = pendingReporterEvents;
+  pendingReporterEvents = {};
+  Object.keys(reporterEvents).forEach(apiKey => AppMetrica.reportReporterEvents(apiKey, reporterEvents[apiKey]));
+  if (pendingEvents.length === 0) {
+    return;
+  }
+  const events = pendingEvents;
+  pendingEvents = [];
+  AppMetrica.reportEvents(events);
+}
+
+function batchEvent(events: Array<AppMetricaEvent>, event: AppMetricaEvent, options: EventBatchingOptions) {
+  events.push(event);
+  if (events.length >= (options.maxBatchSize || DEFAULT_MAX_BATCH_SIZE)) {
+    flushPendingEvents();
+  } else {
+    scheduleFlush();
+  }
+}
+
+function createReporter(apiKey: string): Reporter {
+  return {
+    reportEvent(eventName: string, attributes: ?Object = null) {
+      if (eventBatching == null) {
+        AppMetrica.reportReporterEvent(apiKey, eventName, attributes);
+        return;
+      }
+      const events = pendingReporterEvents[apiKey] || (pendingReporterEvents[apiKey] = []);
+      batchEvent(events, {name: eventName, attributes}, eventBatching);
+    },
+
+    reportEvents(events: Array<AppMetricaEvent>) {
+      flushPendingEvents();
+      AppMetrica.reportReporterEvents(apiKey, events);
+    },
+
+    pauseSession() {
+      flushPendingEvents();
+      AppMetrica.pauseReporterSession(apiKey);
+    },
+
+    resumeSession() {
+      AppMetrica.resumeReporterSession(apiKey);
+    },
+
+    sendEventsBuffer() {
+      flushPendingEvents();
+      AppMetrica.sendReporterEventsBuffer(apiKey);
+    },
+  };
+}
 
 export default {
   activate(config: AppMetricaConfig) {
@@ -61,23 +243,119 @@ export default {
     return AppMetrica.getLibraryVersion();
   },
 
+  // Android. Reports made before activation are kept natively and replayed once it completes.
+  async getPendingReportStats(): PendingReportStats {
+    return AppMetrica.getPendingReportStats();
+  },
+
+  // Android. Counters and values are aggregated natively and reported
+  // periodically (and when the app goes to background), one event per metric.
+  incrementCounter(name: string, delta: number = 1, dimensions: ?Object = null) {
+    AppMetrica.incrementCounter(name, delta, dimensions);
+  },
+
+  recordValue(name: string, value: number) {
+    AppMetrica.recordValue(name, value);
+  },
+
+  // Timestamps are taken natively. Finished spans are reported in batches as
+  // appmetrica_plugin_spans events. Returns -1 if too many spans are open.
+  startSpan(name: string, attributes: ?Object = null): number {
+    return AppMetrica.startSpan(name, attributes);
+  },
+
+  endSpan(spanId: number) {
+    AppMetrica.endSpan(spanId);
+  },
+
+  // Android. Call counts and latency histograms of the plugin, enabled with the pluginStats config key.
+  async getPluginStats(): Object {
+    return AppMetrica.getPluginStats();
+  },
+
   pauseSession() {
+    flushPendingEvents();
     AppMetrica.pauseSession();
   },
 
   reportAppOpen(deeplink: ?string = null) {
+    flushPendingEvents();
     AppMetrica.reportAppOpen(deeplink);
   },
 
-  reportError(error: string, reason: Object) {
-    AppMetrica.reportError(error);
+  // Pass an Error to report its JS stack trace, on Android repeats are grouped by message and stack.
+  reportError(error: string | Error, reason: ?Object) {
+    flushPendingEvents();
+    if (error instanceof Error) {
+      AppMetrica.reportError(error.message, error.stack);
+    } else {
+      AppMetrica.reportError(error, null);
+    }
+  },
+
+  // For global JS error handlers, reported as a crash.
+  reportUnhandledException(error: Error) {
+    flushPendingEvents();
+    AppMetrica.reportUnhandledException(error.message, error.stack);
   },
 
   reportEvent(eventName: string, attributes: ?Object = null) {
-    AppMetrica.reportEvent(eventName, attributes);
+    if (eventBatching == null) {
+      AppMetrica.reportEvent(eventName, attributes);
+      return;
+    }
+    batchEvent(pendingEvents, {name: eventName, attributes}, eventBatching);
+  },
+
+  // Serializes attributes once in JS, native side passes the string to the SDK as is.
+  reportEventJson(eventName: string, attributes: ?(Object | string) = null) {
+    const json = attributes == null || typeof attributes === 'string' ? attributes : JSON.stringify(attributes);
+    flushPendingEvents();
+    AppMetrica.reportEventJson(eventName, json);
+  },
+
+  reportEvents(events: Array<AppMetricaEvent>) {
+    flushPendingEvents();
+    AppMetrica.reportEvents(events);
+  },
+
+  // Reporters send events to other API keys, independently of the main one.
+  activateReporter(apiKey: string, config: ?ReporterConfig = null) {
+    AppMetrica.activateReporter(apiKey, config);
+  },
+
+  // Reporters that were not activated use the default config. Event batching applies to them too.
+  getReporter(apiKey: string): Reporter {
+    return reporters[apiKey] || (reporters[apiKey] = createReporter(apiKey));
+  },
+
+  // Registers the attribute keys (and optionally value types) of an event once,
+  // so reportEventById sends only the values. Returns -1 if the schema is malformed.
+  registerEventSchema(eventName: string, keys: Array<string>, types: ?Array<EventSchemaType> = null): number {
+    return AppMetrica.registerEventSchema(eventName, keys, types);
+  },
+
+  // Values go in the order of the schema keys, null values are left out of the event.
+  reportEventById(schemaId: number, values: Array<mixed>) {
+    flushPendingEvents();
+    AppMetrica.reportEventById(schemaId, values);
+  },
+
+  // Collects reportEvent calls made within one frame (or up to maxBatchSize events)
+  // and sends them in a single native call. Pass null to report events immediately again.
+  setEventBatching(options: ?EventBatchingOptions) {
+    eventBatching = options;
+    if (options == null) {
+      flushPendingEvents();
+    }
+  },
+
+  flushEvents() {
+    flushPendingEvents();
   },
 
   reportReferralUrl(referralUrl: string) {
+    flushPendingEvents();
     AppMetrica.reportReferralUrl(referralUrl);
   },
 
@@ -85,11 +363,38 @@ export default {
     AppMetrica.requestAppMetricaDeviceID(listener);
   },
 
+  // Served from a native cache after the first successful request, pass refresh to request again.
+  async getStartupParams(refresh: boolean = false): StartupParams {
+    return AppMetrica.getStartupParams(refresh);
+  },
+
+  // Android. Google Play install referrer, fetched once and cached natively. null where Play doesn't provide it.
+  async getInstallReferrer(): ?InstallReferrer {
+    return AppMetrica.getInstallReferrer();
+  },
+
+  async getDeviceId(refresh: boolean = false): ?string {
+    const params = await AppMetrica.getStartupParams(refresh);
+    return params.deviceId;
+  },
+
+  async getDeviceIdHash(refresh: boolean = false): ?string {
+    const params = await AppMetrica.getStartupParams(refresh);
+    return params.deviceIdHash;
+  },
+
+  async getUuid(refresh: boolean = false): ?string {
+    const params = await AppMetrica.getStartupParams(refresh);
+    return params.uuid;
+  },
+
   resumeSession() {
+    flushPendingEvents();
     AppMetrica.resumeSession();
   },
 
   sendEventsBuffer() {
+    flushPendingEvents();
     AppMetrica.sendEventsBuffer();
   },
 
@@ -106,10 +411,12 @@ export default {
   },
 
   setUserProfileID(userProfileID?: string) {
+    flushPendingEvents();
     AppMetrica.setUserProfileID(userProfileID);
   },
     
   async reportUserProfile(userProfileId: string, userProfile: any) {
+    flushPendingEvents();
     return await AppMetrica.reportUserProfile(userProfileId, userProfile);
   },
 };
@@ -8,10 +8,17 @@
 
 #import "AppMetrica.h"
 #import "AppMetricaUtils.h"
+#import <QuartzCore/QuartzCore.h>
 
 static NSString *const kYMMReactNativeExceptionName = @"ReactNativeException";
 
 @implementation AppMetrica
+{
+    NSMutableArray<NSDictionary *> *_eventSchemas;
+    NSMutableDictionary<NSNumber *, NSDictionary *> *_openSpans;
+    NSInteger _nextSpanId;
+    NSDictionary *_startupParams;
+}
 
 @synthesize methodQueue = _methodQueue;
 
@@ -32,6 +39,71 @@ RCT_EXPORT_METHOD(getLibraryVersion:(RCTPromiseResolveBlock)resolve rejecter:(RC
     resolve([YMMYandexMetrica libraryVersion]);
 }
 
+RCT_EXPORT_METHOD(getPendingReportStats:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject)
+{
+    // Reports made before activation are kept by the SDK itself on iOS
+    resolve(@{ @"queued": @0, @"replayed": @0, @"dropped": @0 });
+}
+
+RCT_EXPORT_METHOD(incrementCounter:(NSString *)name delta:(double)delta dimensions:(NSDictionary *)dimensions)
+{
+    // Native metrics aggregation is only available on Android
+}
+
+RCT_EXPORT_METHOD(recordValue:(NSString *)name value:(double)value)
+{
+    // Native metrics aggregation is only available on Android
+}
+
+RCT_EXPORT_METHOD(getPluginStats:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject)
+{
+    // Plugin instrumentation is only available on Android
+    resolve(@{ @"enabled": @NO });
+}
+
+RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(startSpan:(NSString *)name attributes:(NSDictionary *)attributes)
+{
+    CFTimeInterval start = CACurrentMediaTime();
+    @synchronized (self) {
+        if (_openSpans == nil) {
+            _openSpans = [NSMutableDictionary dictionary];
+        }
+        if (_openSpans.count >= 256 || name == nil) {
+            return @(-1);
+        }
+        NSNumber *spanId = @(++_nextSpanId);
+        NSMutableDictionary *span = [NSMutableDictionary dictionaryWithDictionary:@{ @"name": name, @"start": @(start) }];
+        if (attributes != nil) {
+            span[@"attributes"] = attributes;
+        }
+        _openSpans[spanId] = span;
+        return spanId;
+    }
+}
+
+RCT_EXPORT_METHOD(endSpan:(double)spanId)
+{
+    CFTimeInterval end = CACurrentMediaTime();
+    NSDictionary *span = nil;
+    @synchronized (self) {
+        NSNumber *key = @((NSInteger)spanId);
+        span = _openSpans[key];
+        [_openSpans removeObjectForKey:key];
+    }
+    if (span == nil) {
+        return;
+    }
+    // Spans are reported one by one on iOS
+    NSMutableDictionary *finished = [NSMutableDictionary dictionaryWithDictionary:@{
+        @"name": span[@"name"],
+        @"durationMs": @((end - [span[@"start"] doubleValue]) * 1000),
+    }];
+    if (span[@"attributes"] != nil) {
+        finished[@"attributes"] = span[@"attributes"];
+    }
+    [self reportEvent:@"appmetrica_plugin_spans" :@{ @"spans": @[finished] }];
+}
+
 RCT_EXPORT_METHOD(pauseSession)
 {
     [YMMYandexMetrica pauseSession];
@@ -42,11 +114,17 @@ RCT_EXPORT_METHOD(reportAppOpen:(NSString *)deeplink)
     [YMMYandexMetrica handleOpenURL:[NSURL URLWithString:deeplink]];
 }
 
-RCT_EXPORT_METHOD(reportError:(NSString *)message) {
-    NSException *exception = [[NSException alloc] initWithName:message reason:nil userInfo:nil];
+RCT_EXPORT_METHOD(reportError:(NSString *)message jsStack:(NSString *)jsStack) {
+    NSDictionary *userInfo = jsStack != nil ? @{ @"jsStack": jsStack } : nil;
+    NSException *exception = [[NSException alloc] initWithName:message reason:nil userInfo:userInfo];
     [YMMYandexMetrica reportError:message exception:exception onFailure:NULL];
 }
 
+RCT_EXPORT_METHOD(reportUnhandledException:(NSString *)message jsStack:(NSString *)jsStack) {
+    // Reported as a regular error on iOS
+    [self reportError:message jsStack:jsStack];
+}
+
 RCT_EXPORT_METHOD(reportEvent:(NSString *)eventName:(NSDictionary *)attributes)
 {
     if (attributes == nil) {
@@ -60,6 +138,81 @@ RCT_EXPORT_METHOD(reportEvent:(NSString *)eventName:(NSDictionary *)attributes)
     }
 }
 
+RCT_EXPORT_METHOD(reportEventJson:(NSString *)eventName:(NSString *)json)
+{
+    NSDictionary *attributes = nil;
+    if (json != nil) {
+        NSError *error = nil;
+        attributes = [NSJSONSerialization JSONObjectWithData:[json dataUsingEncoding:NSUTF8StringEncoding] options:0 error:&error];
+        if ([attributes isKindOfClass:[NSDictionary class]] == NO) {
+            NSLog(@"error: invalid attributes for event %@ %@", eventName, [error localizedDescription]);
+            return;
+        }
+    }
+    [self reportEvent:eventName :attributes];
+}
+
+RCT_EXPORT_METHOD(reportEvents:(NSArray *)events)
+{
+    for (id event in events) {
+        if ([event isKindOfClass:[NSDictionary class]] == NO) {
+            continue;
+        }
+        NSString *eventName = event[@"name"];
+        if ([eventName isKindOfClass:[NSString class]] == NO) {
+            continue;
+        }
+        NSDictionary *attributes = event[@"attributes"];
+        if ([attributes isKindOfClass:[NSDictionary class]] == NO) {
+            attributes = nil;
+        }
+        [self reportEvent:eventName :attributes];
+    }
+}
+
+RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(registerEventSchema:(NSString *)eventName keys:(NSArray<NSString *> *)keys types:(NSArray *)types)
+{
+    // Value types are only checked on Android
+    if (eventName == nil || keys == nil) {
+        return @(-1);
+    }
+    @synchronized (self) {
+        if (_eventSchemas == nil) {
+            _eventSchemas = [NSMutableArray array];
+        }
+        NSDictionary *schema = @{ @"name": eventName, @"keys": keys };
+        NSUInteger index = [_eventSchemas indexOfObject:schema];
+        if (index == NSNotFound) {
+            [_eventSchemas addObject:schema];
+            index = _eventSchemas.count - 1;
+        }
+        return @(index);
+    }
+}
+
+RCT_EXPORT_METHOD(reportEventById:(double)schemaId values:(NSArray *)values)
+{
+    NSDictionary *schema = nil;
+    @synchronized (self) {
+        NSInteger index = (NSInteger)schemaId;
+        if (index >= 0 && index < (NSInteger)_eventSchemas.count) {
+            schema = _eventSchemas[index];
+        }
+    }
+    NSArray<NSString *> *keys = schema[@"keys"];
+    if (schema == nil || values.count > keys.count) {
+        NSLog(@"error: event dropped, values don't match schema %d", (int)schemaId);
+        return;
+    }
+    NSMutableDictionary *attributes = [NSMutableDictionary dictionaryWithCapacity:values.count];
+    [values enumerateObjectsUsingBlock:^(id value, NSUInteger i, BOOL *stop) {
+        if (value != [NSNull null]) {
+            attributes[keys[i]] = value;
+        }
+    }];
+    [self reportEvent:schema[@"name"] :attributes];
+}
+
 RCT_EXPORT_METHOD(reportReferralUrl:(NSString *)referralUrl)
 {
     [YMMYandexMetrica reportReferralUrl:[NSURL URLWithString:referralUrl]];
@@ -73,6 +226,40 @@ RCT_EXPORT_METHOD(requestAppMetricaDeviceID:(RCTResponseSenderBlock)listener)
     [YMMYandexMetrica requestAppMetricaDeviceIDWithCompletionQueue:nil completionBlock:completionBlock];
 }
 
+RCT_EXPORT_METHOD(getStartupParams:(BOOL)refresh resolver:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject)
+{
+    // Same as on Android: served from the cache once a device ID was received, unless refresh is passed
+    if (refresh == NO && _startupParams != nil) {
+        resolve(_startupParams);
+        return;
+    }
+    NSArray<YMMStartupKey> *keys = @[ kYMMDeviceIDKey, kYMMDeviceIDHashKey, kYMMUUIDKey ];
+    [YMMYandexMetrica requestStartupIdentifiersWithKeys:keys
+                                        completionQueue:self.methodQueue
+                                        completionBlock:^(NSDictionary<YMMStartupKey, id> *_Nullable identifiers, NSError *_Nullable error) {
+        if (error != nil) {
+            NSString *reason = [AppMetricaUtils stringFromRequestDeviceIDError:error];
+            reject(reason, error.localizedDescription, error);
+            return;
+        }
+        NSDictionary *params = @{
+            @"deviceId": [self wrap:identifiers[kYMMDeviceIDKey]],
+            @"deviceIdHash": [self wrap:identifiers[kYMMDeviceIDHashKey]],
+            @"uuid": [self wrap:identifiers[kYMMUUIDKey]],
+        };
+        if (identifiers[kYMMDeviceIDKey] != nil) {
+            self->_startupParams = params;
+        }
+        resolve(params);
+    }];
+}
+
+RCT_EXPORT_METHOD(getInstallReferrer:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject)
+{
+    // The install referrer is a Google Play feature
+    resolve([NSNull null]);
+}
+
 RCT_EXPORT_METHOD(resumeSession)
 {
     [YMMYandexMetrica resumeSession];
@@ -98,6 +285,70 @@ RCT_EXPORT_METHOD(setStatisticsSending:(BOOL)enabled)
     [YMMYandexMetrica setStatisticsSending:enabled];
 }
 
+RCT_EXPORT_METHOD(activateReporter:(NSString *)apiKey config:(NSDictionary *)configDict)
+{
+    YMMMutableReporterConfiguration *configuration = [[YMMMutableReporterConfiguration alloc] initWithApiKey:apiKey];
+    if (configDict[@"logs"] != nil) {
+        configuration.logs = [configDict[@"logs"] boolValue];
+    }
+    if (configDict[@"maxReportsInDatabaseCount"] != nil) {
+        configuration.maxReportsCount = [configDict[@"maxReportsInDatabaseCount"] unsignedIntegerValue];
+    }
+    if (configDict[@"sessionTimeout"] != nil) {
+        configuration.sessionTimeout = [configDict[@"sessionTimeout"] unsignedIntegerValue];
+    }
+    if (configDict[@"statisticsSending"] != nil) {
+        configuration.statisticsSending = [configDict[@"statisticsSending"] boolValue];
+    }
+    if (configDict[@"userProfileID"] != nil) {
+        configuration.userProfileID = configDict[@"userProfileID"];
+    }
+    [YMMYandexMetrica activateReporterWithConfiguration:configuration];
+}
+
+RCT_EXPORT_METHOD(reportReporterEvent:(NSString *)apiKey eventName:(NSString *)eventName attributes:(NSDictionary *)attributes)
+{
+    [[YMMYandexMetrica reporterForApiKey:apiKey] reportEvent:eventName parameters:attributes onFailure:^(NSError *error) {
+        NSLog(@"error: %@", [error localizedDescription]);
+    }];
+}
+
+RCT_EXPORT_METHOD(reportReporterEvents:(NSString *)apiKey events:(NSArray *)events)
+{
+    id<YMMYandexMetricaReporting> reporter = [YMMYandexMetrica reporterForApiKey:apiKey];
+    for (id event in events) {
+        if ([event isKindOfClass:[NSDictionary class]] == NO) {
+            continue;
+        }
+        NSString *eventName = event[@"name"];
+        if ([eventName isKindOfClass:[NSString class]] == NO) {
+            continue;
+        }
+        NSDictionary *attributes = event[@"attributes"];
+        if ([attributes isKindOfClass:[NSDictionary class]] == NO) {
+            attributes = nil;
+        }
+        [reporter reportEvent:eventName parameters:attributes onFailure:^(NSError *error) {
+            NSLog(@"error: %@", [error localizedDescription]);
+        }];
+    }
+}
+
+RCT_EXPORT_METHOD(pauseReporterSession:(NSString *)apiKey)
+{
+    [[YMMYandexMetrica reporterForApiKey:apiKey] pauseSession];
+}
+
+RCT_EXPORT_METHOD(resumeReporterSession:(NSString *)apiKey)
+{
+    [[YMMYandexMetrica reporterForApiKey:apiKey] resumeSession];
+}
+
+RCT_EXPORT_METHOD(sendReporterEventsBuffer:(NSString *)apiKey)
+{
+    [[YMMYandexMetrica reporterForApiKey:apiKey] sendEventsBuffer];
+}
+
 RCT_EXPORT_METHOD(setUserProfileID:(NSString *)userProfileID)
 {
     [YMMYandexMetrica setUserProfileID:userProfileID];
@@ -0,0 +1,52 @@
+/*
+ * Version for React Native
+ * © 2020 YANDEX
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://yandex.com/legal/appmetrica_sdk_agreement/
+ */
+
+// @flow
+
+import type {TurboModule} from 'react-native/Libraries/TurboModule/RCTExport';
+import * as TurboModuleRegistry from 'react-native/Libraries/TurboModule/TurboModuleRegistry';
+
+export interface Spec extends TurboModule {
+  +activate: (config: Object) => void;
+  +getLibraryApiLevel: () => Promise<number>;
+  +getLibraryVersion: () => Promise<string>;
+  +getStartupParams: (refresh: boolean) => Promise<Object>;
+  +getInstallReferrer: () => Promise<?Object>;
+  +getPendingReportStats: () => Promise<Object>;
+  +getPluginStats: () => Promise<Object>;
+  +incrementCounter: (name: string, delta: number, dimensions: ?Object) => void;
+  +recordValue: (name: string, value: number) => void;
+  +startSpan: (name: string, attributes: ?Object) => number;
+  +endSpan: (spanId: number) => void;
+  +pauseSession: () => void;
+  +reportAppOpen: (deeplink: ?string) => void;
+  +reportError: (message: string, jsStack: ?string) => void;
+  +reportUnhandledException: (message: string, jsStack: ?string) => void;
+  +reportEvent: (eventName: string, attributes: ?Object) => void;
+  +reportEventJson: (eventName: string, json: ?string) => void;
+  +reportEvents: (events: Array<Object>) => void;
+  +registerEventSchema: (eventName: string, keys: Array<string>, types: ?Array<string>) => number;
+  +reportEventById: (schemaId: number, values: Array<mixed>) => void;
+  +reportReferralUrl: (referralUrl: string) => void;
+  +requestAppMetricaDeviceID: (listener: (deviceId: ?string, reason: ?string) => void) => void;
+  +resumeSession: () => void;
+  +sendEventsBuffer: () => void;
+  +setLocation: (location: ?Object) => void;
+  +setLocationTracking: (enabled: boolean) => void;
+  +setStatisticsSending: (enabled: boolean) => void;
+  +activateReporter: (apiKey: string, config: ?Object) => void;
+  +reportReporterEvent: (apiKey: string, eventName: string, attributes: ?Object) => void;
+  +reportReporterEvents: (apiKey: string, events: Array<Object>) => void;
+  +pauseReporterSession: (apiKey: string) => void;
+  +resumeReporterSession: (apiKey: string) => void;
+  +sendReporterEventsBuffer: (apiKey: string) => void;
+  +setUserProfileID: (userProfileID: ?string) => void;
+  +reportUserProfile: (userProfileID: string, userProfile: Object) => Promise<boolean>;
+}
+
+export default (TurboModuleRegistry.get<Spec>('AppMetrica'): ?Spec);